@@ -0,0 +1,134 @@
+package io.github.speedbridgemc.entityevents.impl;
+
+import org.jetbrains.annotations.NotNull;
+import org.objenesis.Objenesis;
+import org.objenesis.ObjenesisStd;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.entity.Entity;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.Packet;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+import java.lang.reflect.Field;
+
+// worlds and entities for benchmarks, with the mixin hooks implemented by hand
+// the tests mock these instead, but mocked calls cost far more than the dispatch path being measured
+public final class BenchWorlds {
+    private BenchWorlds() { }
+
+    // neither class can be constructed outside of a running server, so their constructors are skipped entirely
+    private static final Objenesis OBJENESIS = new ObjenesisStd();
+    private static final Field POS, BLOCK_POS;
+
+    static {
+        try {
+            POS = Entity.class.getDeclaredField("pos");
+            POS.setAccessible(true);
+            BLOCK_POS = Entity.class.getDeclaredField("blockPos");
+            BLOCK_POS.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Failed to find entity position fields", e);
+        }
+    }
+
+    public static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    public static final class BenchWorld extends ServerWorld implements ServerWorldHooks {
+        private volatile WorldStorage storage;
+
+        @SuppressWarnings("ConstantConditions")
+        private BenchWorld() {
+            super(null, null, null, null, null, null, null, null, false, 0, null, false);
+            throw new AssertionError("Create worlds with BenchWorlds.world");
+        }
+
+        // only read for tick stamps, which BenchEntity ignores anyway
+        @Override
+        public long getTime() {
+            return 0;
+        }
+
+        @Override
+        public WorldStorage entityevents$getWorldStorage() {
+            return storage;
+        }
+
+        @Override
+        public void entityevents$setWorldStorage(@NotNull WorldStorage storage) {
+            this.storage = storage;
+        }
+    }
+
+    // subclass this to get more entity classes, see entity
+    public static class BenchEntity extends Entity implements EntityHooks {
+        private int damageDepth;
+
+        protected BenchEntity() {
+            super(null, null);
+            throw new AssertionError("Create entities with BenchWorlds.entity");
+        }
+
+        @Override
+        protected void initDataTracker() { }
+
+        @Override
+        protected void readCustomDataFromNbt(NbtCompound nbt) { }
+
+        @Override
+        protected void writeCustomDataToNbt(NbtCompound nbt) { }
+
+        @Override
+        public Packet<?> createSpawnPacket() {
+            throw new UnsupportedOperationException();
+        }
+
+        // never stamped, so every tick invoke actually dispatches
+        @Override
+        public boolean entityevents$isTickStamped(@NotNull World world, long time) {
+            return false;
+        }
+
+        @Override
+        public boolean entityevents$getTickResult() {
+            return false;
+        }
+
+        @Override
+        public void entityevents$setTickResult(@NotNull World world, long time, boolean cancelled) { }
+
+        @Override
+        public int entityevents$enterDamage() {
+            return damageDepth++;
+        }
+
+        @Override
+        public void entityevents$exitDamage() {
+            damageDepth--;
+        }
+    }
+
+    public static @NotNull BenchWorld world() {
+        return OBJENESIS.newInstance(BenchWorld.class);
+    }
+
+    public static <E extends BenchEntity> @NotNull E entity(@NotNull Class<E> clazz, @NotNull ServerWorld world,
+                                                            double x, double y, double z) {
+        E entity = OBJENESIS.newInstance(clazz);
+        entity.world = world;
+        // setPos would notify the entity's (missing) change listener, so set what the getters read directly
+        try {
+            POS.set(entity, new Vec3d(x, y, z));
+            BLOCK_POS.set(entity, new BlockPos(x, y, z));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to set entity position", e);
+        }
+        return entity;
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.speedbridgemc.entityevents.impl;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.minecraft.entity.Entity;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// reads the same class files with ClassHeaderParser and with the ClassReader the scanner used to use
+// the classes are copied out of Minecraft and Entity Events first, so both read plain files, like in a dev environment
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ClassHeaderBenchmark {
+    private static final int CLASS_COUNT = 4096;
+
+    // what the scanner did before ClassHeaderParser - a full ClassReader, then a second pass for the annotations
+    private static final class MixinChecker extends ClassVisitor {
+        public boolean isMixin;
+
+        public MixinChecker() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            isMixin = false;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            if ("Lorg/spongepowered/asm/mixin/Mixin;".equals(desc))
+                isMixin = true;
+            return super.visitAnnotation(desc, visible);
+        }
+    }
+
+    private Path directory;
+    private Path[] classFiles;
+    private final ClassHeaderParser parser = new ClassHeaderParser();
+    private final MixinChecker checker = new MixinChecker();
+
+    @Setup
+    public void setup() throws IOException, URISyntaxException {
+        directory = Files.createTempDirectory("entity-events-headers");
+        // our own classes (which include some mixins) come first, then as many of Minecraft's as fit
+        int count = copyClassFiles(ClassHeaderParser.class, 0);
+        count = copyClassFiles(Entity.class, count);
+        if (count < CLASS_COUNT)
+            throw new IllegalStateException("Only found " + count + " class files");
+        classFiles = new Path[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++)
+            classFiles[i] = directory.resolve(i + ".class");
+        // both have to agree, or the comparison is meaningless
+        for (Path path : classFiles) {
+            parser.parse(path);
+            ClassReader reader = readClass(path);
+            if (!reader.getClassName().equals(parser.getClassName()) || !Objects.equals(reader.getSuperName(), parser.getSuperName())
+                    || checker.isMixin != parser.isMixin())
+                throw new IllegalStateException("ClassHeaderParser disagrees with ClassReader about " + reader.getClassName());
+        }
+    }
+
+    // copies the class files next to clazz, whether that's in a jar or a directory, sorted so every run reads the same ones
+    private int copyClassFiles(@NotNull Class<?> clazz, int index) throws IOException, URISyntaxException {
+        Path root = Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI());
+        try (FileSystem jar = Files.isDirectory(root) ? null : FileSystems.newFileSystem(root, (ClassLoader) null)) {
+            ObjectArrayList<Path> sources = new ObjectArrayList<>();
+            try (Stream<Path> stream = Files.walk(jar == null ? root : jar.getPath("/"))) {
+                stream.filter(path -> path.toString().endsWith(".class")).sorted().forEach(sources::add);
+            }
+            for (int i = 0; i < sources.size() && index < CLASS_COUNT; i++)
+                Files.copy(sources.get(i), directory.resolve(index++ + ".class"));
+        }
+        return index;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CLASS_COUNT)
+    public void headerParser(Blackhole blackhole) throws IOException {
+        for (Path path : classFiles) {
+            parser.parse(path);
+            blackhole.consume(parser.getSuperName());
+            blackhole.consume(parser.isMixin());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CLASS_COUNT)
+    public void classReader(Blackhole blackhole) throws IOException {
+        for (Path path : classFiles) {
+            ClassReader reader = readClass(path);
+            blackhole.consume(reader.getSuperName());
+            blackhole.consume(checker.isMixin);
+        }
+    }
+
+    private @NotNull ClassReader readClass(@NotNull Path path) throws IOException {
+        try (InputStream is = Files.newInputStream(path)) {
+            ClassReader reader = new ClassReader(is);
+            reader.accept(checker, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return reader;
+        }
+    }
+}
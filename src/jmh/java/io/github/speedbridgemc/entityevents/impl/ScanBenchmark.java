@@ -0,0 +1,145 @@
+package io.github.speedbridgemc.entityevents.impl;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+// scans a set of generated mod jars with different numbers of threads - the jars come from a fixed seed, so every run
+// (and every machine) scans exactly the same classes, in the same layout
+// e.g. ./gradlew jmh -PjmhArgs="ScanBenchmark -p threads=1,4"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ScanBenchmark {
+    private static final long SEED = 1234;
+    private static final String CLASS_ENTITY = "net/minecraft/class_1297";
+    private static final String ANNOTATION_MIXIN = "Lorg/spongepowered/asm/mixin/Mixin;";
+    // a handful of big mods and a lot of small ones, roughly 50k classes in total
+    private static final int[] JAR_SIZES = { 20000, 12000, 6000, 3000, 2000, 1500, 1000, 1000,
+            800, 600, 500, 400, 300, 300, 200, 200, 100, 100, 50, 50 };
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private Path directory;
+    private final ObjectArrayList<FileSystem> jars = new ObjectArrayList<>();
+    private final ObjectArrayList<Path> roots = new ObjectArrayList<>();
+    private int expectedClasses;
+    private ForkJoinPool pool;
+    private final EntityClassScanner scanner = new EntityClassScanner();
+
+    @Setup
+    public void setup() throws IOException, InterruptedException, ExecutionException {
+        directory = Files.createTempDirectory("entity-events-scan");
+        Random random = new Random(SEED);
+        for (int i = 0; i < JAR_SIZES.length; i++) {
+            Path path = directory.resolve("mod" + i + ".jar");
+            expectedClasses += writeJar(path, i, JAR_SIZES[i], random);
+            FileSystem jar = FileSystems.newFileSystem(path, (ClassLoader) null);
+            jars.add(jar);
+            roots.add(jar.getPath("/"));
+        }
+        pool = new ForkJoinPool(threads);
+        // fails fast if the scanner misses (or makes up) classes, instead of reporting a fast but wrong scan
+        int found = scan();
+        if (found != expectedClasses)
+            throw new IllegalStateException("Scanner found " + found + " classes, expected " + expectedClasses);
+    }
+
+    // writes a mod jar of count classes in nested packages, and returns how many of them the scanner should keep
+    private static int writeJar(@NotNull Path path, int mod, int count, @NotNull Random random) throws IOException {
+        // superclasses within the mod, starting with Entity itself, so some of the mod's entities extend each other
+        ObjectArrayList<String> entityClasses = new ObjectArrayList<>();
+        entityClasses.add(CLASS_ENTITY);
+        int kept = 0;
+        try (OutputStream os = Files.newOutputStream(path);
+             JarOutputStream jos = new JarOutputStream(os)) {
+            for (int i = 0; i < count; i++) {
+                StringBuilder name = new StringBuilder("com/example/mod").append(mod);
+                for (int depth = 1 + random.nextInt(3); depth > 0; depth--)
+                    name.append("/p").append(random.nextInt(4));
+                String className = name.append("/C").append(i).toString();
+                String superName;
+                boolean mixin = false;
+                int kind = random.nextInt(20);
+                if (kind < 10)
+                    superName = "java/lang/Object";
+                else if (kind < 12)
+                    superName = "java/lang/Thread";
+                else if (kind < 14) {
+                    superName = entityClasses.get(random.nextInt(entityClasses.size()));
+                    mixin = true;
+                } else if (kind < 17) {
+                    superName = entityClasses.get(random.nextInt(entityClasses.size()));
+                    entityClasses.add(className);
+                } else
+                    superName = "com/example/lib/Base" + random.nextInt(16);
+                if (!mixin && !superName.startsWith("java/"))
+                    kept++;
+                JarEntry entry = new JarEntry(className + ".class");
+                entry.setTime(0); // same bytes on every run
+                jos.putNextEntry(entry);
+                jos.write(writeClass(className, superName, mixin, random));
+                jos.closeEntry();
+            }
+        }
+        return kept;
+    }
+
+    private static byte @NotNull [] writeClass(@NotNull String className, @NotNull String superName, boolean mixin,
+                                               @NotNull Random random) {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, superName, null);
+        // mixin annotations aren't retained at runtime, which is exactly why the parser has to look for invisible ones
+        if (mixin)
+            cw.visitAnnotation(ANNOTATION_MIXIN, false).visitEnd();
+        // some bulk after the header, like a real class - the parser should never have to read it
+        for (int i = random.nextInt(8); i > 0; i--)
+            cw.visitField(Opcodes.ACC_PRIVATE, "field" + i, "I", null, null).visitEnd();
+        for (int i = random.nextInt(12); i > 0; i--) {
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "method" + i, "()I", null, null);
+            mv.visitCode();
+            mv.visitLdcInsn(className.hashCode() + i);
+            mv.visitInsn(Opcodes.IRETURN);
+            mv.visitMaxs(1, 1);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        for (FileSystem jar : jars)
+            jar.close();
+        for (int i = 0; i < JAR_SIZES.length; i++)
+            Files.delete(directory.resolve("mod" + i + ".jar"));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public int scan() throws InterruptedException, ExecutionException {
+        int found = 0;
+        for (List<String> classNames : scanner.scanRoots(pool, roots))
+            found += classNames.size();
+        return found;
+    }
+}
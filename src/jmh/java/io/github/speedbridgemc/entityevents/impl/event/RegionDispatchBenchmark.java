@@ -0,0 +1,94 @@
+package io.github.speedbridgemc.entityevents.impl.event;
+
+import io.github.speedbridgemc.entityevents.api.EntityTickEvents;
+import io.github.speedbridgemc.entityevents.api.ListenerHandle;
+import io.github.speedbridgemc.entityevents.impl.BenchWorlds;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.Box;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// ticks entities spread over an area with scattered arenas - once with a matching predicate per arena, which every
+// entity is tested against, and once with inBox, where the section index only hands out the arenas nearby
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RegionDispatchBenchmark {
+    private static final int ENTITY_COUNT = 1024, AREA_SIZE = 512;
+
+    @Param({ "8", "48" })
+    public int arenas;
+
+    private BenchWorlds.BenchWorld world;
+    private Entity[] entities;
+    private final ObjectArrayList<ListenerHandle> handles = new ObjectArrayList<>();
+    private int calls;
+
+    @Setup
+    public void setup(BenchmarkParams params) {
+        BenchWorlds.bootstrap();
+        world = BenchWorlds.world();
+        // arenas and entities come from a fixed seed, so both variants see exactly the same layout
+        Random random = new Random(1234);
+        Box[] boxes = new Box[arenas];
+        for (int i = 0; i < arenas; i++) {
+            double x = random.nextInt(AREA_SIZE - 48), y = 48 + random.nextInt(32), z = random.nextInt(AREA_SIZE - 48);
+            boxes[i] = new Box(x, y, z, x + 16 + random.nextInt(32), y + 16 + random.nextInt(32), z + 16 + random.nextInt(32));
+        }
+        entities = new Entity[ENTITY_COUNT];
+        int expected = 0;
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            Entity entity = BenchWorlds.entity(BenchWorlds.BenchEntity.class, world,
+                    random.nextDouble() * AREA_SIZE, 64 + random.nextDouble() * 32, random.nextDouble() * AREA_SIZE);
+            entities[i] = entity;
+            for (Box box : boxes) {
+                if (box.contains(entity.getPos()))
+                    expected++;
+            }
+        }
+
+        boolean indexed = params.getBenchmark().endsWith("regions");
+        for (Box box : boxes) {
+            EntityTickEvents<Entity> events = indexed ? EntityTickEvents.inBox(world, box)
+                    : EntityTickEvents.matching(entity -> entity.getEntityWorld() == world && box.contains(entity.getPos()));
+            handles.add(events.listenAfter(entity -> calls++));
+        }
+        // both variants have to call the same listeners, or the comparison is meaningless
+        tickAll();
+        if (calls != expected)
+            throw new IllegalStateException("Listeners ran " + calls + " times, expected " + expected);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (ListenerHandle handle : handles)
+            handle.close();
+        handles.clear();
+        TickInternals.onWorldUnloaded(world);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public int predicates() {
+        return tickAll();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public int regions() {
+        return tickAll();
+    }
+
+    private int tickAll() {
+        for (Entity entity : entities)
+            TickInternals.invoke(entity);
+        return calls;
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.speedbridgemc.entityevents.impl.event;
+
+import io.github.speedbridgemc.entityevents.api.EntityTickEvents;
+import io.github.speedbridgemc.entityevents.api.ListenerHandle;
+import io.github.speedbridgemc.entityevents.impl.BenchWorlds;
+import io.github.speedbridgemc.entityevents.impl.Flags;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.fabricmc.fabric.api.util.TriState;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import net.minecraft.entity.Entity;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// ticks a mix of entity classes, each with the same class listeners - generated invokers give every class its own
+// call sites, while the interpreter shares one set between all of them
+// compare interpreted with generated, e.g. ./gradlew jmh -PjmhArgs="TickDispatchBenchmark"
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TickDispatchBenchmark {
+    private static final int ENTITY_COUNT = 1024;
+
+    public static class Zombie extends BenchWorlds.BenchEntity { }
+    public static class Skeleton extends BenchWorlds.BenchEntity { }
+    public static class Creeper extends BenchWorlds.BenchEntity { }
+    public static class Spider extends BenchWorlds.BenchEntity { }
+
+    // listeners per event, half on Entity and half on each concrete class
+    @Param({ "2", "8" })
+    public int listeners;
+
+    private Entity[] entities;
+    private final ObjectArrayList<ListenerHandle> handles = new ObjectArrayList<>();
+    private int befores, afters;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup(BenchmarkParams params) {
+        if (Flags.GENERATE_INVOKERS != params.getBenchmark().endsWith("generated"))
+            throw new IllegalStateException("Benchmark forked with the wrong entityevents.generateInvokers flag");
+        BenchWorlds.bootstrap();
+        BenchWorlds.BenchWorld world = BenchWorlds.world();
+        Class<? extends BenchWorlds.BenchEntity>[] classes = new Class[] { Zombie.class, Skeleton.class, Creeper.class, Spider.class };
+        for (int i = 0; i < listeners / 2; i++) {
+            addListeners(EntityTickEvents.all());
+            for (Class<? extends BenchWorlds.BenchEntity> clazz : classes)
+                addListeners(EntityTickEvents.ofClass(clazz));
+        }
+        // shuffled with a fixed seed, so the JIT sees the same mix of classes on every run
+        Random random = new Random(1234);
+        entities = new Entity[ENTITY_COUNT];
+        for (int i = 0; i < ENTITY_COUNT; i++)
+            entities[i] = BenchWorlds.entity(classes[random.nextInt(classes.length)], world, 0, 64, 0);
+    }
+
+    private <E extends Entity> void addListeners(EntityTickEvents<E> events) {
+        handles.add(events.listenBefore(entity -> {
+            befores++;
+            return TriState.DEFAULT;
+        }));
+        handles.add(events.listenAfter(entity -> afters++));
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (ListenerHandle handle : handles)
+            handle.close();
+        handles.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public int interpreted() {
+        return tickAll();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITY_COUNT)
+    @Fork(value = 2, jvmArgsAppend = "-Dentityevents.generateInvokers=true")
+    public int generated() {
+        return tickAll();
+    }
+
+    private int tickAll() {
+        int cancelled = 0;
+        for (Entity entity : entities) {
+            if (TickInternals.invoke(entity))
+                cancelled++;
+        }
+        return cancelled + befores + afters;
+    }
+}
@@ -0,0 +1,132 @@
+package io.github.speedbridgemc.entityevents.impl.event;
+
+import io.github.speedbridgemc.entityevents.api.EntityTickEvents;
+import io.github.speedbridgemc.entityevents.api.ListenerHandle;
+import io.github.speedbridgemc.entityevents.impl.BenchWorlds;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.fabricmc.fabric.api.util.TriState;
+import org.openjdk.jmh.annotations.*;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.Box;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// every thread ticks the entities of its own world, so all they share is the frozen listener registry - each world
+// lazily creates its own WorldStorage (and, with regions, its own region index) on the first dispatch
+// throughput should grow linearly with the thread count, as long as there are enough cores to go around
+// compare the ops/s of the threadsN methods, e.g. ./gradlew jmh -PjmhArgs="WorldScalingBenchmark -p regions=true"
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class WorldScalingBenchmark {
+    private static final int ENTITY_COUNT = 1024, AREA_SIZE = 256;
+
+    public static class Zombie extends BenchWorlds.BenchEntity { }
+    public static class Skeleton extends BenchWorlds.BenchEntity { }
+    public static class Creeper extends BenchWorlds.BenchEntity { }
+    public static class Spider extends BenchWorlds.BenchEntity { }
+
+    @SuppressWarnings("unchecked")
+    private static final Class<? extends BenchWorlds.BenchEntity>[] CLASSES =
+            new Class[] { Zombie.class, Skeleton.class, Creeper.class, Spider.class };
+
+    // the listeners every world dispatches to
+    @State(Scope.Benchmark)
+    public static class SharedListeners {
+        // also give each world a region listener, which sends its entities through the interpreter
+        @Param({ "false", "true" })
+        public boolean regions;
+
+        private final ObjectArrayList<ListenerHandle> handles = new ObjectArrayList<>();
+
+        @Setup
+        public void setup() {
+            BenchWorlds.bootstrap();
+            addListeners(EntityTickEvents.all());
+            for (Class<? extends BenchWorlds.BenchEntity> clazz : CLASSES)
+                addListeners(EntityTickEvents.ofClass(clazz));
+        }
+
+        // the listeners only touch the entity they're called for, so threads never write to the same memory
+        private <E extends Entity> void addListeners(EntityTickEvents<E> events) {
+            handles.add(events.listenBefore(entity -> entity.isAlive() ? TriState.DEFAULT : TriState.TRUE));
+            handles.add(events.listenAfter(entity -> entity.age++));
+        }
+
+        @TearDown
+        public void tearDown() {
+            for (ListenerHandle handle : handles)
+                handle.close();
+            handles.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PerWorld {
+        private BenchWorlds.BenchWorld world;
+        private Entity[] entities;
+        private ListenerHandle region;
+
+        // takes SharedListeners, so JMH registers the shared listeners before any world is set up
+        @Setup
+        public void setup(SharedListeners listeners) {
+            world = BenchWorlds.world();
+            if (listeners.regions)
+                region = EntityTickEvents.inBox(world, new Box(0, 0, 0, AREA_SIZE / 2, 256, AREA_SIZE / 2))
+                        .listenAfter(entity -> entity.age++);
+            // the same layout in every world
+            Random random = new Random(1234);
+            entities = new Entity[ENTITY_COUNT];
+            for (int i = 0; i < ENTITY_COUNT; i++)
+                entities[i] = BenchWorlds.entity(CLASSES[random.nextInt(CLASSES.length)], world,
+                        random.nextDouble() * AREA_SIZE, 64, random.nextDouble() * AREA_SIZE);
+        }
+
+        @TearDown
+        public void tearDown() {
+            if (region != null)
+                region.close();
+            TickInternals.onWorldUnloaded(world);
+        }
+
+        private int tickAll() {
+            int cancelled = 0;
+            for (Entity entity : entities) {
+                if (TickInternals.invoke(entity))
+                    cancelled++;
+            }
+            return cancelled;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public int threads1(PerWorld world) {
+        return world.tickAll();
+    }
+
+    @Benchmark
+    @Threads(2)
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public int threads2(PerWorld world) {
+        return world.tickAll();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public int threads4(PerWorld world) {
+        return world.tickAll();
+    }
+
+    @Benchmark
+    @Threads(8)
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public int threads8(PerWorld world) {
+        return world.tickAll();
+    }
+}
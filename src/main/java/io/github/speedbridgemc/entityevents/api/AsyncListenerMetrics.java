@@ -0,0 +1,21 @@
+package io.github.speedbridgemc.entityevents.api;
+
+// counters of the queue async listeners are fed from, see EntityDamageEvents.listenAsync
+// all counts are totals since startup
+// each damage event is one snapshot, no matter how many async listeners it's delivered to
+public interface AsyncListenerMetrics {
+    long getSubmitted();
+    long getProcessed();
+    // dropped because the queue was full
+    long getDropped();
+    // skipped by the sample overflow policy while the queue was filling up
+    long getSampledOut();
+    // listener calls that threw
+    long getFailures();
+    // how long dispatching threads spent waiting for space, with the block overflow policy
+    long getBlockedNanos();
+
+    int getQueueSize();
+    int getQueueCapacity();
+    int getPeakQueueSize();
+}
@@ -0,0 +1,76 @@
+package io.github.speedbridgemc.entityevents.api;
+
+import org.jetbrains.annotations.NotNull;
+
+import net.minecraft.entity.EntityType;
+import java.util.UUID;
+
+// what async damage listeners get instead of the entity itself, since they don't run on the server thread
+// captured right after the damage event, so position and such are from before the damage was applied
+public final class DamageSnapshot {
+    private final UUID entityUuid;
+    private final EntityType<?> entityType;
+    private final double x, y, z;
+    private final String sourceName;
+    private final float amount;
+    private final boolean cancelled;
+
+    public DamageSnapshot(@NotNull UUID entityUuid, @NotNull EntityType<?> entityType, double x, double y, double z,
+                          @NotNull String sourceName, float amount, boolean cancelled) {
+        this.entityUuid = entityUuid;
+        this.entityType = entityType;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.sourceName = sourceName;
+        this.amount = amount;
+        this.cancelled = cancelled;
+    }
+
+    public @NotNull UUID getEntityUuid() {
+        return entityUuid;
+    }
+
+    public @NotNull EntityType<?> getEntityType() {
+        return entityType;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    // DamageSource.getName, e.g. "fall" or "player"
+    public @NotNull String getSourceName() {
+        return sourceName;
+    }
+
+    public float getAmount() {
+        return amount;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public String toString() {
+        return "DamageSnapshot{" +
+                "entityUuid=" + entityUuid +
+                ", entityType=" + entityType +
+                ", x=" + x +
+                ", y=" + y +
+                ", z=" + z +
+                ", sourceName='" + sourceName + '\'' +
+                ", amount=" + amount +
+                ", cancelled=" + cancelled +
+                '}';
+    }
+}
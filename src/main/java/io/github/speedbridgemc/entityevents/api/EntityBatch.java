@@ -0,0 +1,21 @@
+package io.github.speedbridgemc.entityevents.api;
+
+import org.jetbrains.annotations.NotNull;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+
+// entities of the same type and class, see EntityBatchTickEvents
+// only valid during the listener call it was passed to
+public interface EntityBatch<E extends Entity> {
+    @NotNull EntityType<?> getType();
+    @NotNull Class<? extends Entity> getEntityClass();
+
+    int size();
+    @NotNull E get(int index);
+
+    boolean isCancelled(int index);
+    // cancelled entities don't tick this time, and their per-entity tick events don't fire either
+    // only allowed before entities tick
+    void cancel(int index);
+}
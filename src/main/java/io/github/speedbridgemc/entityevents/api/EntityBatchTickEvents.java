@@ -0,0 +1,60 @@
+package io.github.speedbridgemc.entityevents.api;
+
+import io.github.speedbridgemc.entityevents.impl.event.BatchTickInternals;
+import org.jetbrains.annotations.NotNull;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.server.world.ServerWorld;
+
+// fired once per world tick, right before and right after the world ticks its entities
+// listeners get the entities that are about to tick in batches, one per entity type and class, instead of one call per entity
+// entities riding another entity are ticked by their vehicle, so they aren't part of any batch
+// batches are collected from the world's entity list before any entity ticks, so they're what's *expected* to tick:
+// - the list only holds entities in chunks that tick entities, so entities in other loaded chunks are never batched
+// - the world still skips some batched entities - animals and NPCs discarded because their spawning is disabled,
+//   entities that despawn right before their tick, and entities removed or mounted by an earlier entity's tick
+// use EntityTickEvents if you need to know whether a specific entity really ticked
+public interface EntityBatchTickEvents<E extends Entity> {
+    static <E extends Entity> @NotNull EntityBatchTickEvents<E> of(@NotNull EntityType<E> type) {
+        return BatchTickInternals.of(type);
+    }
+
+    static <E extends Entity> @NotNull EntityBatchTickEvents<E> ofClass(@NotNull Class<E> clazz) {
+        return BatchTickInternals.ofClass(clazz);
+    }
+
+    static @NotNull EntityBatchTickEvents<Entity> all() {
+        return ofClass(Entity.class);
+    }
+
+    static @NotNull EntityBatchTickEvents<LivingEntity> living() {
+        return ofClass(LivingEntity.class);
+    }
+
+    @NotNull EntityBatchTickEvents<E> registerBefore(@NotNull Before<E> callback);
+    @NotNull EntityBatchTickEvents<E> registerAfter(@NotNull After<E> callback);
+
+    @NotNull ListenerHandle listenBefore(@NotNull Before<E> callback, int priority);
+    @NotNull ListenerHandle listenAfter(@NotNull After<E> callback, int priority);
+
+    default @NotNull ListenerHandle listenBefore(@NotNull Before<E> callback) {
+        return listenBefore(callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
+    default @NotNull ListenerHandle listenAfter(@NotNull After<E> callback) {
+        return listenAfter(callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
+    @FunctionalInterface
+    interface Before<E extends Entity> {
+        // entities can be cancelled here, see EntityBatch.cancel
+        void beforeEntitiesTick(@NotNull ServerWorld world, @NotNull EntityBatch<E> batch);
+    }
+
+    @FunctionalInterface
+    interface After<E extends Entity> {
+        void afterEntitiesTick(@NotNull ServerWorld world, @NotNull EntityBatch<E> batch);
+    }
+}
@@ -1,14 +1,21 @@
 package io.github.speedbridgemc.entityevents.api;
 
+import io.github.speedbridgemc.entityevents.impl.event.AsyncDispatcher;
+import io.github.speedbridgemc.entityevents.impl.event.Region;
 import io.github.speedbridgemc.entityevents.impl.event.DamageInternals;
 import net.fabricmc.fabric.api.util.TriState;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.damage.DamageSource;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.tag.Tag;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkPos;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 
 public interface EntityDamageEvents<E extends Entity> {
@@ -33,13 +40,75 @@ public interface EntityDamageEvents<E extends Entity> {
     }
 
     static @NotNull EntityDamageEvents<Entity> inTag(@NotNull Tag<EntityType<?>> tag) {
-        return matching(entity -> entity.getType().isIn(tag));
+        return DamageInternals.inTag(tag);
+    }
+
+    // only entities in the given world, inside the box
+    // every call returns new events - keep them around instead of calling this again for the same region
+    // the listeners are dropped when the world unloads
+    static @NotNull EntityDamageEvents<Entity> inBox(@NotNull ServerWorld world, @NotNull Box box) {
+        return DamageInternals.inRegion(Region.ofBox(world, box));
+    }
+
+    // only entities in the given world, inside any of the chunks
+    static @NotNull EntityDamageEvents<Entity> inChunks(@NotNull ServerWorld world, @NotNull Collection<ChunkPos> chunks) {
+        return DamageInternals.inRegion(Region.ofChunks(world, chunks));
     }
 
     @NotNull EntityDamageEvents<E> registerBefore(@NotNull Before<E> callback);
     @NotNull EntityDamageEvents<E> registerAfter(@NotNull After<E> callback);
     @NotNull EntityDamageEvents<E> registerCancelled(@NotNull Cancelled<E> callback);
 
+    // like the register methods, but return a handle that unregisters the listener again, see ListenerHandle
+    @NotNull ListenerHandle listenBefore(@NotNull Before<E> callback, int priority);
+    @NotNull ListenerHandle listenAfter(@NotNull After<E> callback, int priority);
+    @NotNull ListenerHandle listenCancelled(@NotNull Cancelled<E> callback, int priority);
+
+    default @NotNull ListenerHandle listenBefore(@NotNull Before<E> callback) {
+        return listenBefore(callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
+    default @NotNull ListenerHandle listenAfter(@NotNull After<E> callback) {
+        return listenAfter(callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
+    default @NotNull ListenerHandle listenCancelled(@NotNull Cancelled<E> callback) {
+        return listenCancelled(callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
+    // like listenAfter and listenCancelled, but the listener runs at the end of the world tick instead,
+    // so slow listeners don't hold up the entity update itself
+    // the entity may have changed (or been removed) by then - all deferred listeners run after all regular ones
+    @NotNull ListenerHandle listenAfterDeferred(@NotNull After<E> callback, int priority);
+    @NotNull ListenerHandle listenCancelledDeferred(@NotNull Cancelled<E> callback, int priority);
+
+    default @NotNull ListenerHandle listenAfterDeferred(@NotNull After<E> callback) {
+        return listenAfterDeferred(callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
+    default @NotNull ListenerHandle listenCancelledDeferred(@NotNull Cancelled<E> callback) {
+        return listenCancelledDeferred(callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
+    // runs the listener off the server thread, with a snapshot of the event instead of the entity itself
+    // called both when the damage goes through and when it's cancelled, see DamageSnapshot.isCancelled
+    // snapshots go through a bounded queue - if listeners fall behind, they can be dropped, see AsyncListenerMetrics
+    @NotNull ListenerHandle listenAsync(@NotNull Async callback);
+
+    // by default, async listeners run on a virtual thread if the runtime supports them, or a single daemon thread if not
+    static void setAsyncExecutor(@NotNull Executor executor) {
+        AsyncDispatcher.INSTANCE.setExecutor(executor);
+    }
+
+    static @NotNull AsyncListenerMetrics getAsyncMetrics() {
+        return AsyncDispatcher.INSTANCE;
+    }
+
+    @FunctionalInterface
+    interface Async {
+        void onDamaged(@NotNull DamageSnapshot snapshot);
+    }
+
     @FunctionalInterface
     interface Before<E extends Entity> {
         @NotNull TriState beforeDamaged(@NotNull E entity, @NotNull DamageSource source, float amount);
@@ -0,0 +1,56 @@
+package io.github.speedbridgemc.entityevents.api;
+
+import io.github.speedbridgemc.entityevents.impl.ScanMetrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+// what the entity class scan did at startup, and how long it took
+// the same data is written to config/speedbridge/entity-events/scan_report.json
+public interface EntityScanReport {
+    // null if no scan ran, i.e. lazy detection is enabled
+    static @Nullable EntityScanReport get() {
+        return ScanMetrics.getLastReport();
+    }
+
+    long getTotalNanos();
+    long getCacheLoadNanos();
+    long getFingerprintNanos();
+    long getScanNanos();
+    long getGraphNanos();
+    long getCacheSaveNanos();
+
+    int getParallelism();
+    // how much of the scan phase the worker threads spent actually scanning, from 0 to 1
+    double getThreadUtilization();
+
+    int getCacheHits();
+    int getCacheMisses();
+    long getBytesRead();
+    int getClassesParsed();
+    int getMixinsSkipped();
+    int getJdkSubclassesSkipped();
+    int getEntityClassCount();
+
+    @NotNull List<? extends Mod> getMods();
+
+    interface Mod {
+        @NotNull String getModId();
+        @NotNull Source getSource();
+        int getClassCount();
+        long getBytesRead();
+        // summed across threads, so this can exceed the scan's wall time
+        long getScanNanos();
+    }
+
+    enum Source {
+        // size and modification time matched the cache
+        CACHE,
+        // file metadata changed, but its fingerprint still matched the cache
+        FINGERPRINT,
+        // read from the index shipped in the mod
+        INDEX,
+        SCAN
+    }
+}
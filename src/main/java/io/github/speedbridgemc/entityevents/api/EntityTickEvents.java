@@ -1,5 +1,6 @@
 package io.github.speedbridgemc.entityevents.api;
 
+import io.github.speedbridgemc.entityevents.impl.event.Region;
 import io.github.speedbridgemc.entityevents.impl.event.TickInternals;
 import net.fabricmc.fabric.api.util.TriState;
 import org.jetbrains.annotations.NotNull;
@@ -7,7 +8,11 @@ import org.jetbrains.annotations.NotNull;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.LivingEntity;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.tag.Tag;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkPos;
+import java.util.Collection;
 import java.util.function.Predicate;
 
 public interface EntityTickEvents<E extends Entity> {
@@ -32,13 +37,70 @@ public interface EntityTickEvents<E extends Entity> {
     }
 
     static @NotNull EntityTickEvents<Entity> inTag(@NotNull Tag<EntityType<?>> tag) {
-        return matching(entity -> entity.getType().isIn(tag));
+        return TickInternals.inTag(tag);
+    }
+
+    // only entities in the given world, inside the box
+    // every call returns new events - keep them around instead of calling this again for the same region
+    // the listeners are dropped when the world unloads
+    static @NotNull EntityTickEvents<Entity> inBox(@NotNull ServerWorld world, @NotNull Box box) {
+        return TickInternals.inRegion(Region.ofBox(world, box));
+    }
+
+    // only entities in the given world, inside any of the chunks
+    static @NotNull EntityTickEvents<Entity> inChunks(@NotNull ServerWorld world, @NotNull Collection<ChunkPos> chunks) {
+        return TickInternals.inRegion(Region.ofChunks(world, chunks));
     }
 
     @NotNull EntityTickEvents<E> registerBefore(@NotNull Before<E> callback);
     @NotNull EntityTickEvents<E> registerAfter(@NotNull After<E> callback);
     @NotNull EntityTickEvents<E> registerCancelled(@NotNull Cancelled<E> callback);
 
+    // like the register methods, but return a handle that unregisters the listener again, see ListenerHandle
+    @NotNull ListenerHandle listenBefore(@NotNull Before<E> callback, int priority);
+    @NotNull ListenerHandle listenAfter(@NotNull After<E> callback, int priority);
+    @NotNull ListenerHandle listenCancelled(@NotNull Cancelled<E> callback, int priority);
+
+    default @NotNull ListenerHandle listenBefore(@NotNull Before<E> callback) {
+        return listenBefore(callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
+    default @NotNull ListenerHandle listenAfter(@NotNull After<E> callback) {
+        return listenAfter(callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
+    default @NotNull ListenerHandle listenCancelled(@NotNull Cancelled<E> callback) {
+        return listenCancelled(callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
+    // like listenAfter and listenCancelled, but the listener runs at the end of the world tick instead,
+    // so slow listeners don't hold up the entity update itself
+    // the entity may have changed (or been removed) by then - all deferred listeners run after all regular ones
+    @NotNull ListenerHandle listenAfterDeferred(@NotNull After<E> callback, int priority);
+    @NotNull ListenerHandle listenCancelledDeferred(@NotNull Cancelled<E> callback, int priority);
+
+    default @NotNull ListenerHandle listenAfterDeferred(@NotNull After<E> callback) {
+        return listenAfterDeferred(callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
+    default @NotNull ListenerHandle listenCancelledDeferred(@NotNull Cancelled<E> callback) {
+        return listenCancelledDeferred(callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
+    // like listenBefore and listenAfter, but the listener only runs every interval ticks for each entity
+    // entities are spread out evenly across the interval (by their ID), so they don't all run on the same tick
+    // they're ordered by priority together with the regular listeners of the same events
+    @NotNull ListenerHandle listenBeforeEvery(int interval, @NotNull Before<E> callback, int priority);
+    @NotNull ListenerHandle listenAfterEvery(int interval, @NotNull After<E> callback, int priority);
+
+    default @NotNull ListenerHandle listenBeforeEvery(int interval, @NotNull Before<E> callback) {
+        return listenBeforeEvery(interval, callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
+    default @NotNull ListenerHandle listenAfterEvery(int interval, @NotNull After<E> callback) {
+        return listenAfterEvery(interval, callback, ListenerHandle.DEFAULT_PRIORITY);
+    }
+
     @FunctionalInterface
     interface Before<E extends Entity> {
         @NotNull TriState beforeTick(@NotNull E entity);
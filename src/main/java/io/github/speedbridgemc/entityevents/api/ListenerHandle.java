@@ -0,0 +1,12 @@
+package io.github.speedbridgemc.entityevents.api;
+
+// returned by the listen methods of the event interfaces - closing it unregisters the listener
+// closing a handle more than once does nothing
+public interface ListenerHandle extends AutoCloseable {
+    // priority used by the register methods
+    // listeners with a higher priority run first, listeners with the same priority run in registration order
+    int DEFAULT_PRIORITY = 0;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,241 @@
+package io.github.speedbridgemc.entityevents.impl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// reads just enough of a class file to tell what it's called, what it extends and whether it's a mixin
+// instances reuse their buffers, so keep one per thread
+final class ClassHeaderParser {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final byte[] INVISIBLE_ANNOTATIONS_NAME = "RuntimeInvisibleAnnotations".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MIXIN_DESC = "Lorg/spongepowered/asm/mixin/Mixin;".getBytes(StandardCharsets.UTF_8);
+
+    private ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+    private int[] cpOffsets = new int[1024];
+    private char[] chars = new char[128];
+
+    private String className;
+    private @Nullable String superName;
+    private boolean mixin;
+
+    public @NotNull String getClassName() {
+        return className;
+    }
+
+    // null for java/lang/Object and module-info
+    public @Nullable String getSuperName() {
+        return superName;
+    }
+
+    public boolean isMixin() {
+        return mixin;
+    }
+
+    // size of the last parsed class file, in bytes
+    public int getLength() {
+        return buffer.limit();
+    }
+
+    public void parse(@NotNull Path path) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Class file is too large");
+            if (buffer.capacity() < size)
+                buffer = ByteBuffer.allocate(Math.max((int) size, buffer.capacity() * 2));
+            buffer.clear();
+            while (channel.read(buffer) > 0) {
+                if (!buffer.hasRemaining()) {
+                    // the channel lied about its size
+                    ByteBuffer newBuffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    newBuffer.put(buffer);
+                    buffer = newBuffer;
+                }
+            }
+            buffer.flip();
+        }
+        try {
+            parse();
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated class file", e);
+        }
+    }
+
+    private void parse() throws IOException {
+        final ByteBuffer buf = buffer;
+        if (buf.getInt(0) != MAGIC)
+            throw new IOException("Not a class file");
+        int cpCount = u2(8);
+        if (cpOffsets.length < cpCount)
+            cpOffsets = new int[Math.max(cpCount, cpOffsets.length * 2)];
+        // record where each constant starts, so names can be looked up later
+        int pos = 10;
+        for (int i = 1; i < cpCount; i++) {
+            cpOffsets[i] = pos;
+            int tag = buf.get(pos);
+            switch (tag) {
+            case 1: // Utf8
+                pos += 3 + u2(pos + 1);
+                break;
+            case 7: // Class
+            case 8: // String
+            case 16: // MethodType
+            case 19: // Module
+            case 20: // Package
+                pos += 3;
+                break;
+            case 15: // MethodHandle
+                pos += 4;
+                break;
+            case 3: // Integer
+            case 4: // Float
+            case 9: // Fieldref
+            case 10: // Methodref
+            case 11: // InterfaceMethodref
+            case 12: // NameAndType
+            case 17: // Dynamic
+            case 18: // InvokeDynamic
+                pos += 5;
+                break;
+            case 5: // Long
+            case 6: // Double
+                pos += 9;
+                i++; // takes up two slots
+                break;
+            default:
+                throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+        // skip access flags
+        pos += 2;
+        className = readClassName(u2(pos));
+        int superIndex = u2(pos + 2);
+        superName = superIndex == 0 ? null : readClassName(superIndex);
+        pos += 4;
+        // skip interfaces
+        pos += 2 + u2(pos) * 2;
+        // skip fields and methods
+        for (int j = 0; j < 2; j++) {
+            int memberCount = u2(pos);
+            pos += 2;
+            for (int i = 0; i < memberCount; i++) {
+                // skip access flags, name and descriptor
+                pos += 6;
+                pos = skipAttributes(pos);
+            }
+        }
+        // finally, the class attributes - Mixin's annotation is class-retained, so it ends up in the invisible ones
+        mixin = false;
+        int attributeCount = u2(pos);
+        pos += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            int nameIndex = u2(pos);
+            int length = buf.getInt(pos + 2);
+            if (utf8Equals(nameIndex, INVISIBLE_ANNOTATIONS_NAME) && hasMixinAnnotation(pos + 6)) {
+                mixin = true;
+                break;
+            }
+            pos += 6 + length;
+        }
+    }
+
+    private int u2(int pos) {
+        return buffer.getShort(pos) & 0xFFFF;
+    }
+
+    private int skipAttributes(int pos) {
+        int attributeCount = u2(pos);
+        pos += 2;
+        for (int i = 0; i < attributeCount; i++)
+            pos += 6 + buffer.getInt(pos + 2);
+        return pos;
+    }
+
+    private boolean hasMixinAnnotation(int pos) {
+        int annotationCount = u2(pos);
+        pos += 2;
+        for (int i = 0; i < annotationCount; i++) {
+            if (utf8Equals(u2(pos), MIXIN_DESC))
+                return true;
+            pos = skipAnnotation(pos);
+        }
+        return false;
+    }
+
+    private int skipAnnotation(int pos) {
+        int pairCount = u2(pos + 2);
+        pos += 4;
+        for (int i = 0; i < pairCount; i++)
+            pos = skipElementValue(pos + 2);
+        return pos;
+    }
+
+    private int skipElementValue(int pos) {
+        int tag = buffer.get(pos);
+        pos++;
+        switch (tag) {
+        case 'e': // enum constant
+            return pos + 4;
+        case '@':
+            return skipAnnotation(pos);
+        case '[':
+            int valueCount = u2(pos);
+            pos += 2;
+            for (int i = 0; i < valueCount; i++)
+                pos = skipElementValue(pos);
+            return pos;
+        default: // constant or class
+            return pos + 2;
+        }
+    }
+
+    private boolean utf8Equals(int index, byte @NotNull [] expected) {
+        int pos = cpOffsets[index];
+        if (buffer.get(pos) != 1 || u2(pos + 1) != expected.length)
+            return false;
+        pos += 3;
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(pos + i) != expected[i])
+                return false;
+        }
+        return true;
+    }
+
+    private @NotNull String readClassName(int classIndex) throws IOException {
+        return readUtf8(u2(cpOffsets[classIndex] + 1));
+    }
+
+    // decodes modified UTF-8, see DataInput.readUTF
+    private @NotNull String readUtf8(int index) throws IOException {
+        int pos = cpOffsets[index];
+        int length = u2(pos + 1);
+        pos += 3;
+        if (chars.length < length)
+            chars = new char[Math.max(length, chars.length * 2)];
+        int charCount = 0;
+        int end = pos + length;
+        while (pos < end) {
+            int c = buffer.get(pos++) & 0xFF;
+            if (c < 0x80)
+                chars[charCount++] = (char) c;
+            else if ((c & 0xE0) == 0xC0) {
+                int c2 = buffer.get(pos++);
+                chars[charCount++] = (char) (((c & 0x1F) << 6) | (c2 & 0x3F));
+            } else if ((c & 0xF0) == 0xE0) {
+                int c2 = buffer.get(pos++), c3 = buffer.get(pos++);
+                chars[charCount++] = (char) (((c & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+            } else
+                throw new UTFDataFormatException("Malformed modified UTF-8 in constant pool");
+        }
+        return new String(chars, 0, charCount);
+    }
+}
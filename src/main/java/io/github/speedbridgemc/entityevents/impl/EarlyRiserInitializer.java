@@ -9,6 +9,11 @@ public final class EarlyRiserInitializer implements Runnable {
 
     @Override
     public void run() {
+        if (Flags.LAZY_DETECTION) {
+            if (LazyEntityTransformer.install())
+                return;
+            LOGGER.error("Failed to set up lazy entity class detection, falling back to scanning");
+        }
         EntityClassScanner scanner = new EntityClassScanner();
         try {
             scanner.scan();
@@ -1,290 +1,433 @@
 package io.github.speedbridgemc.entityevents.impl;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
-import com.google.common.collect.ImmutableSet;
+import io.github.speedbridgemc.entityevents.api.EntityScanReport;
 import it.unimi.dsi.fastutil.objects.*;
 import net.fabricmc.loader.api.FabricLoader;
 import net.fabricmc.loader.api.ModContainer;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.objectweb.asm.AnnotationVisitor;
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassVisitor;
-import org.objectweb.asm.Opcodes;
 
-import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Locale;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Consumer;
 
 public final class EntityClassScanner {
-    private static final class MixinChecker extends ClassVisitor {
-        public boolean isMixin;
-
-        public MixinChecker() {
-            super(Opcodes.ASM8);
-        }
-
-        @Override
-        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-            isMixin = false;
-        }
-
-        @Override
-        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-            if ("Lorg/spongepowered/asm/mixin/Mixin;".equals(desc))
-                isMixin = true;
-            return super.visitAnnotation(desc, visible);
-        }
-    }
-
     private static final Logger LOGGER = LogManager.getLogger("EntityEvents|EntityClassScanner");
     public final ObjectOpenHashSet<String> entityClassNames = new ObjectOpenHashSet<>();
-    private final ObjectSet<String> entityClassNamesSync = ObjectSets.synchronize(entityClassNames);
-    private final ObjectSet<String> mixinClassNames = ObjectSets.synchronize(new ObjectOpenHashSet<>());
-    private final ThreadLocal<MixinChecker> tlChecker = ThreadLocal.withInitial(MixinChecker::new);
-    private final AtomicBoolean foundNewEntityThisPass = new AtomicBoolean(false);
-    private final @Nullable MessageDigest checksumDigest;
-
-    public EntityClassScanner() {
-        MessageDigest tempDigest = null;
-        try {
-            tempDigest = MessageDigest.getInstance("SHA-256");
-        } catch (NoSuchAlgorithmException e) {
-            LOGGER.error("Failed to get SHA-256 MessageDigest instance! File checksums will not be available", e);
-        }
-        checksumDigest = tempDigest;
-    }
+    private final ThreadLocal<ClassHeaderParser> tlParser = ThreadLocal.withInitial(ClassHeaderParser::new);
 
-    private static final class ChecksumResult {
-        private final boolean directory;
-        private final @Nullable String checksum;
-
-        private ChecksumResult(boolean directory, @Nullable String checksum) {
-            this.directory = directory;
-            this.checksum = checksum;
-        }
-
-        private static final ChecksumResult DIRECTORY = new ChecksumResult(true, null);
-        private static final ChecksumResult FAILURE = new ChecksumResult(false, null);
-
-        public static @NotNull ChecksumResult directory() {
-            return DIRECTORY;
-        }
-
-        public static @NotNull ChecksumResult failure() {
-            return FAILURE;
-        }
-
-        public static @NotNull ChecksumResult success(@NotNull String checksum) {
-            return new ChecksumResult(false, checksum);
-        }
-
-        @SuppressWarnings("UnusedReturnValue")
-        public @NotNull ChecksumResult ifDirectory(@NotNull Runnable runnable) {
-            if (directory)
-                runnable.run();
-            return this;
-        }
+    // a mod's origin file, and what we know about it so far
+    private static final class ModFile {
+        public final @NotNull ModContainer mod;
+        public final @NotNull Path path;
+        public final long size, modified;
+        public @Nullable String checksum;
 
-        @SuppressWarnings("UnusedReturnValue")
-        public @NotNull ChecksumResult ifPresent(@NotNull Consumer<@NotNull String> consumer) {
-            if (checksum != null)
-                consumer.accept(checksum);
-            return this;
+        public ModFile(@NotNull ModContainer mod, @NotNull Path path, long size, long modified) {
+            this.mod = mod;
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
         }
     }
 
-    private @NotNull ChecksumResult calculateModChecksum(@NotNull ModContainer mod) {
-        if (checksumDigest == null)
-            return ChecksumResult.failure();
-        final String modId = mod.getMetadata().getId();
+    private static @Nullable Path getModOrigin(@NotNull ModContainer mod) {
         if (mod instanceof net.fabricmc.loader.ModContainer) {
             URL originURL = ((net.fabricmc.loader.ModContainer) mod).getOriginUrl();
-            URI originURI = null;
             try {
-                originURI = originURL.toURI();
-            } catch (URISyntaxException e) {
-                LOGGER.error("Failed to convert URL \"" + originURL + "\" to URI!", e);
-            }
-            if (originURI != null) {
-                Path path = Paths.get(originURI);
-                if (Files.isDirectory(path))
-                    return ChecksumResult.directory();
-                try (InputStream input = Files.newInputStream(path);
-                     BufferedInputStream bInput = new BufferedInputStream(input)) {
-                    byte[] buf = new byte[1024];
-                    int count;
-                    while ((count = bInput.read(buf)) > 0) {
-                        checksumDigest.update(buf, 0, count);
-                    }
-                    buf = checksumDigest.digest();
-                    checksumDigest.reset();
-                    StringBuilder sb = new StringBuilder();
-                    for (byte b : buf)
-                        sb.append(String.format("%02X", b));
-                    return ChecksumResult.success(sb.toString().toUpperCase(Locale.ROOT));
-                } catch (IOException e) {
-                    LOGGER.error("Failed to read from mod file \"" + path + "\"!", e);
-                }
+                return Paths.get(originURL.toURI());
+            } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+                LOGGER.error("Failed to convert URL \"" + originURL + "\" to a path!", e);
             }
         }
-        LOGGER.error("Failed to determine the file checksum of mod \"{}\" - please delete its entry in the cache if you update it!", modId);
-        return ChecksumResult.failure();
+        return null;
     }
 
     public void scan() {
+        ScanMetrics metrics = new ScanMetrics();
+        final long startTime = System.nanoTime();
         ScanResultCache cache = new ScanResultCache();
         cache.load();
+        long phaseStart = System.nanoTime();
+        metrics.cacheLoadNanos = phaseStart - startTime;
 
-        final int[] cachedCount = { 0 };
-        ObjectOpenHashSet<ModContainer> modsToScan = new ObjectOpenHashSet<>();
-        Object2ReferenceOpenHashMap<String, String> modChecksums = new Object2ReferenceOpenHashMap<>();
+        // the class -> superclass edges of every loaded mod, whether they came from the cache or a fresh scan
+        ObjectArrayList<ModClasses> allClasses = new ObjectArrayList<>();
+        ObjectOpenHashSet<String> modIds = new ObjectOpenHashSet<>();
+        ObjectArrayList<ModContainer> modsToScan = new ObjectArrayList<>();
+        Object2ReferenceOpenHashMap<String, ModFile> modFiles = new Object2ReferenceOpenHashMap<>();
+        ObjectArrayList<ModFile> toFingerprint = new ObjectArrayList<>();
         for (ModContainer mod : FabricLoader.getInstance().getAllMods()) {
             String modId = mod.getMetadata().getId();
             // hardcoded exceptions :P
             if ("fabricloader".equals(modId) || "java".equals(modId))
                 continue;
-            calculateModChecksum(mod).ifPresent(checksum -> {
-                modChecksums.put(modId, checksum);
+            modIds.add(modId);
+            Path path = getModOrigin(mod);
+            if (path == null) {
+                LOGGER.error("Failed to determine the origin file of mod \"{}\" - it will be scanned every time!", modId);
+                modsToScan.add(mod);
+                continue;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                LOGGER.error("Failed to read attributes of mod file \"" + path + "\" - it will be scanned every time!", e);
+                modsToScan.add(mod);
+                continue;
+            }
+            if (attributes.isDirectory()) {
+                modsToScan.add(mod); // always rescan folder mods (dev environment)
+                continue;
+            }
+            ModFile modFile = new ModFile(mod, path, attributes.size(), attributes.lastModifiedTime().toMillis());
+            modFiles.put(modId, modFile);
+            ScanResultCache.Entry cachedEntry = cache.getEntry(modId);
+            // same size and modification time? probably the same file, no need to read it at all
+            if (!Flags.FULL_CHECKSUMS && cachedEntry != null && cachedEntry.fileChecksum != null
+                    && cachedEntry.fileSize == modFile.size && cachedEntry.fileModified == modFile.modified) {
+                modFile.checksum = cachedEntry.fileChecksum;
+                allClasses.add(new ModClasses(modId, EntityScanReport.Source.CACHE, cachedEntry.classNames, cachedEntry.superNames));
+            } else
+                toFingerprint.add(modFile);
+        }
+        // mods that were removed can't provide entity classes (or superclasses of them) anymore
+        cache.retainEntries(modIds);
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Flags.SCAN_PARALLELISM));
+        metrics.parallelism = pool.getParallelism();
+        if (!toFingerprint.isEmpty()) {
+            LOGGER.debug("Fingerprinting {} mod files", toFingerprint.size());
+            FileFingerprints.initialize(); // load this class before we start threadin', same as MappedNames below
+            ObjectArrayList<Callable<String>> callables = new ObjectArrayList<>();
+            for (ModFile modFile : toFingerprint)
+                callables.add(() -> FileFingerprints.fingerprint(modFile.path));
+            List<Future<String>> futures = pool.invokeAll(callables);
+            for (int i = 0, size = toFingerprint.size(); i < size; i++) {
+                ModFile modFile = toFingerprint.get(i);
+                String modId = modFile.mod.getMetadata().getId();
+                try {
+                    modFile.checksum = futures.get(i).get();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException("Fingerprinting was interrupted!", e);
+                } catch (ExecutionException e) {
+                    LOGGER.error("Failed to fingerprint mod file \"" + modFile.path + "\"!", e.getCause());
+                }
                 ScanResultCache.Entry cachedEntry = cache.getEntry(modId);
-                if (cachedEntry == null || !StringUtils.equalsIgnoreCase(checksum, cachedEntry.fileChecksum)) {
+                if (cachedEntry == null || modFile.checksum == null || !modFile.checksum.equals(cachedEntry.fileChecksum)) {
                     cache.removeEntry(modId);
-                    modsToScan.add(mod);
-                } else
-                    cachedCount[0] += cachedEntry.entitySubclasses.size();
-            }).ifDirectory(() -> modsToScan.add(mod)); // always rescan folder mods (dev environment)
-        }
-        if (cachedCount[0] > 0) {
-            LOGGER.info("Loaded {} Entity subclass names from the cache.", cachedCount[0]);
-            // we don't care about mod IDs or file checksums, just give us the entity class names
-            cache.getAllEntries().stream().flatMap(entry -> entry.entitySubclasses.stream()).forEach(entityClassNames::add);
+                    modsToScan.add(modFile.mod);
+                } else {
+                    // only the file's metadata changed, remember the new values so we can skip this next time
+                    cache.putEntry(new ScanResultCache.Entry(modId, modFile.checksum, modFile.size, modFile.modified,
+                            cachedEntry.classNames, cachedEntry.superNames));
+                    allClasses.add(new ModClasses(modId, EntityScanReport.Source.FINGERPRINT,
+                            cachedEntry.classNames, cachedEntry.superNames));
+                }
+            }
         }
+        metrics.fingerprintNanos = System.nanoTime() - phaseStart;
+        if (!allClasses.isEmpty())
+            LOGGER.info("Loaded the classes of {} mods from the cache.", allClasses.size());
 
+        MappedNames.initialize(); // load this class before we start threadin', because apparently Knot can deadlock when loading classes
+        phaseStart = System.nanoTime();
         if (!modsToScan.isEmpty()) {
-            LOGGER.info("Now scanning for Entity subclasses in {} mods...", modsToScan.size());
-            MappedNames.initialize(); // load this class before we start threadin', because apparently Knot can deadlock when loading classes
-            ExecutorService executorService = Executors.newWorkStealingPool(Runtime.getRuntime().availableProcessors());
-            Object2ReferenceOpenHashMap<String, ImmutableSet.Builder<String>> setBuilders = new Object2ReferenceOpenHashMap<>();
-            Object2ReferenceMap<String, ImmutableSet.Builder<String>> setBuildersSync = Object2ReferenceMaps.synchronize(setBuilders);
-
-            int countSrc = 0;
-            // add root Entity class to save some time
-            if (entityClassNames.add(MappedNames.CLASS_ENTITY)) {
-                // add it to the cache manually lmao
-                ImmutableSet.Builder<String> minecraftClassesBuilder = ImmutableSet.builder();
-                minecraftClassesBuilder.add(MappedNames.CLASS_ENTITY);
-                setBuilders.put("minecraft", minecraftClassesBuilder);
-                countSrc = 1;
-            }
-
-            int pass = 1;
-            AtomicInteger count = new AtomicInteger(countSrc);
+            LOGGER.info("Now scanning {} mods...", modsToScan.size());
             Stopwatch stopwatch = Stopwatch.createStarted();
-            do {
-                if (pass > 20)
-                    throw new RuntimeException("Took too long to scan!");
-                foundNewEntityThisPass.set(false);
-                LOGGER.debug(" == SCANNING FOR ENTITY CLASSES, PASS {} == ", pass);
-                ReferenceOpenHashSet<Callable<Void>> callables = new ReferenceOpenHashSet<>();
-                for (ModContainer mod : modsToScan) {
-                    callables.add(() -> {
-                        LOGGER.debug("Scanning in mod \"{}\"", mod.getMetadata().getId());
-                        ImmutableSet.Builder<String> builder = setBuildersSync.computeIfAbsent(mod.getMetadata().getId(), s -> ImmutableSet.builder());
-                        count.addAndGet(scanDirectoryOrFile(mod.getRootPath(), builder::add));
-                        return null;
-                    });
-                }
-                try {
-                    executorService.invokeAll(callables);
-                } catch (InterruptedException e) {
-                    throw new RuntimeException("Pass execution was interrupted!", e);
-                }
-                if (foundNewEntityThisPass.get())
-                    pass++;
+            // read every class header exactly once, recording which class it extends
+            // each mod is split into directories and batches of class files, so big jars don't hog a single thread
+            ObjectArrayList<ModClasses> results = new ObjectArrayList<>();
+            ObjectArrayList<ForkJoinTask<ModClasses>> tasks = new ObjectArrayList<>();
+            for (ModContainer mod : modsToScan) {
+                // if the mod's author already did the work for us, just trust them
+                ModClasses indexed = readIndex(mod);
+                if (indexed != null)
+                    results.add(indexed);
                 else
-                    LOGGER.debug(" == FINISHED ENTITY CLASS SCAN IN {} PASSES == ", pass);
-            } while (foundNewEntityThisPass.get());
-            LOGGER.info("Found {} Entity subclasses in {}ms!", count.get(), stopwatch.stop().elapsed(TimeUnit.MILLISECONDS));
-            executorService.shutdown();
+                    tasks.add(pool.submit(new ScanDirectoryTask(mod.getMetadata().getId(), mod.getRootPath())));
+            }
             try {
-                if (!executorService.awaitTermination(3, TimeUnit.SECONDS))
-                    executorService.shutdownNow();
-            } catch (InterruptedException ignored) { }
+                for (ForkJoinTask<ModClasses> task : tasks)
+                    results.add(task.get());
+            } catch (InterruptedException e) {
+                throw new RuntimeException("Scan was interrupted!", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Failed to scan mod!", e.getCause());
+            }
+            for (ModClasses modClasses : results) {
+                allClasses.add(modClasses);
+                ModFile modFile = modFiles.get(modClasses.modId);
+                if (modFile == null)
+                    cache.putEntry(new ScanResultCache.Entry(modClasses.modId, null, -1, -1,
+                            modClasses.classNames, modClasses.superNames));
+                else
+                    cache.putEntry(new ScanResultCache.Entry(modClasses.modId, modFile.checksum, modFile.size, modFile.modified,
+                            modClasses.classNames, modClasses.superNames));
+            }
+            LOGGER.info("Scanned {} mods in {}ms!", modsToScan.size(), stopwatch.stop().elapsed(TimeUnit.MILLISECONDS));
+        }
+        pool.shutdown();
+        metrics.scanNanos = System.nanoTime() - phaseStart;
 
-            for (Object2ReferenceMap.Entry<String, ImmutableSet.Builder<String>> entry : setBuilders.object2ReferenceEntrySet())
-                cache.putEntry(new ScanResultCache.Entry(entry.getKey(), modChecksums.get(entry.getKey()), entry.getValue().build()));
+        // build the superclass -> subclasses graph across all mods...
+        phaseStart = System.nanoTime();
+        Object2ReferenceOpenHashMap<String, ObjectArrayList<String>> subclasses = new Object2ReferenceOpenHashMap<>();
+        for (ModClasses modClasses : allClasses) {
+            for (int i = 0, size = modClasses.classNames.size(); i < size; i++)
+                subclasses.computeIfAbsent(modClasses.superNames.get(i), s -> new ObjectArrayList<>()).add(modClasses.classNames.get(i));
         }
+        // ...and walk down it from Entity
+        entityClassNames.add(MappedNames.CLASS_ENTITY);
+        ObjectArrayFIFOQueue<String> queue = new ObjectArrayFIFOQueue<>();
+        queue.enqueue(MappedNames.CLASS_ENTITY);
+        while (!queue.isEmpty()) {
+            ObjectArrayList<String> children = subclasses.get(queue.dequeue());
+            if (children == null)
+                continue;
+            for (String child : children) {
+                if (entityClassNames.add(child)) {
+                    LOGGER.debug("Found entity subclass \"{}\"", child);
+                    queue.enqueue(child);
+                }
+            }
+        }
+        metrics.graphNanos = System.nanoTime() - phaseStart;
+        LOGGER.info("Found {} Entity subclasses in {}ms!", entityClassNames.size(), TimeUnit.NANOSECONDS.toMillis(metrics.graphNanos));
 
+        phaseStart = System.nanoTime();
         cache.save();
         entityClassNames.trim();
+        metrics.cacheSaveNanos = System.nanoTime() - phaseStart;
+
+        metrics.totalNanos = System.nanoTime() - startTime;
+        metrics.entityClassCount = entityClassNames.size();
+        for (ModClasses modClasses : allClasses) {
+            metrics.addMod(new ScanMetrics.ModMetrics(modClasses.modId, modClasses.source, modClasses.classNames.size(),
+                    modClasses.bytesRead, modClasses.busyNanos));
+            metrics.busyNanos += modClasses.busyNanos;
+            metrics.bytesRead += modClasses.bytesRead;
+            metrics.classesParsed += modClasses.classesParsed;
+            metrics.mixinsSkipped += modClasses.mixinsSkipped;
+            metrics.jdkSubclassesSkipped += modClasses.jdkSubclassesSkipped;
+        }
+        metrics.publish(cache.getDirectory().resolve("scan_report.json"));
+    }
+
+    // not used by scan - only ScanBenchmark calls this, to time the fork/join scan without the cache, indexes or FabricLoader
+    // each root is scanned like a mod without an index, submitted the same way scan submits them
+    @VisibleForTesting
+    @NotNull List<List<String>> scanRoots(@NotNull ForkJoinPool pool, @NotNull List<Path> roots)
+            throws InterruptedException, ExecutionException {
+        ObjectArrayList<ForkJoinTask<ModClasses>> tasks = new ObjectArrayList<>();
+        for (int i = 0, size = roots.size(); i < size; i++)
+            tasks.add(pool.submit(new ScanDirectoryTask("root" + i, roots.get(i))));
+        ObjectArrayList<List<String>> classNames = new ObjectArrayList<>();
+        for (ForkJoinTask<ModClasses> task : tasks)
+            classNames.add(task.get().classNames);
+        return classNames;
+    }
+
+    // the classes found in a single mod, and the superclass of each
+    private static final class ModClasses {
+        public final String modId;
+        public final EntityScanReport.Source source;
+        public final List<String> classNames, superNames;
+        // for the scan report
+        public long bytesRead, busyNanos;
+        public int classesParsed, mixinsSkipped, jdkSubclassesSkipped;
+
+        public ModClasses(@NotNull String modId, @NotNull EntityScanReport.Source source) {
+            this(modId, source, new ObjectArrayList<>(), new ObjectArrayList<>());
+        }
+
+        public ModClasses(@NotNull String modId, @NotNull EntityScanReport.Source source,
+                          @NotNull List<String> classNames, @NotNull List<String> superNames) {
+            this.modId = modId;
+            this.source = source;
+            this.classNames = classNames;
+            this.superNames = superNames;
+        }
+
+        public void add(@NotNull String className, @NotNull String superName) {
+            classNames.add(className);
+            superNames.add(superName);
+        }
+
+        public void addAll(@NotNull ModClasses other) {
+            classNames.addAll(other.classNames);
+            superNames.addAll(other.superNames);
+            bytesRead += other.bytesRead;
+            busyNanos += other.busyNanos;
+            classesParsed += other.classesParsed;
+            mixinsSkipped += other.mixinsSkipped;
+            jdkSubclassesSkipped += other.jdkSubclassesSkipped;
+        }
     }
 
-    private int scanDirectoryOrFile(@NotNull Path path, @NotNull Consumer<String> resultConsumer) {
-        if (Files.isDirectory(path)) {
-            LOGGER.trace("Scanning children of directory \"{}\"", path);
-            int sum = 0;
-            try (DirectoryStream<Path> ds = Files.newDirectoryStream(path)) {
-                for (Path child : ds)
-                    sum += scanDirectoryOrFile(child, resultConsumer);
+    // mods can ship the output of gradle/entity-events-index.gradle, listing the superclass of each of their classes
+    private static final String INDEX_PATH = "META-INF/entity-events/superclasses.txt";
+    // followed by the mapping namespace the index's names are in
+    private static final String INDEX_HEADER = "# entity-events superclass index v1";
+    // indexes written before the header had a namespace were always built from the remapped jar
+    private static final String INDEX_DEFAULT_NAMESPACE = "intermediary";
+
+    private static @Nullable ModClasses readIndex(@NotNull ModContainer mod) {
+        final String modId = mod.getMetadata().getId();
+        Path path = mod.getRootPath().resolve(INDEX_PATH);
+        if (!Files.isRegularFile(path))
+            return null;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            String namespace;
+            if (INDEX_HEADER.equals(header))
+                namespace = INDEX_DEFAULT_NAMESPACE;
+            else if (header != null && header.startsWith(INDEX_HEADER + " "))
+                namespace = header.substring(INDEX_HEADER.length() + 1).trim();
+            else {
+                LOGGER.warn("Mod \"{}\" has an index in an unknown format, scanning it instead", modId);
+                return null;
+            }
+            // in a dev environment, Loom remaps mod jars to named mappings, but leaves the index alone -
+            // its names would never match anything, so every entity class in the mod would go unnoticed
+            String runtimeNamespace = FabricLoader.getInstance().getMappingResolver().getCurrentRuntimeNamespace();
+            if (!runtimeNamespace.equals(namespace)) {
+                LOGGER.debug("Index of mod \"{}\" uses {} names, but the game is running with {} names, scanning it instead",
+                        modId, namespace, runtimeNamespace);
+                return null;
+            }
+            ModClasses modClasses = new ModClasses(modId, EntityScanReport.Source.INDEX);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#')
+                    continue;
+                int space = line.indexOf(' ');
+                if (space <= 0 || space == line.length() - 1)
+                    throw new IOException("Malformed index line \"" + line + "\"");
+                modClasses.add(line.substring(0, space), line.substring(space + 1));
+            }
+            LOGGER.debug("Read {} classes from the index of mod \"{}\"", modClasses.classNames.size(), modId);
+            return modClasses;
+        } catch (IOException e) {
+            LOGGER.error("Failed to read the index of mod \"" + modId + "\", scanning it instead!", e);
+            return null;
+        }
+    }
+
+    // class files are scanned in batches of this size, so tiny tasks don't drown in fork/join overhead
+    private static final int CLASS_BATCH_SIZE = 64;
+
+    // forks a subtask for each subdirectory and each batch of class files in a directory
+    private final class ScanDirectoryTask extends RecursiveTask<ModClasses> {
+        private final String modId;
+        private final Path directory;
+
+        public ScanDirectoryTask(@NotNull String modId, @NotNull Path directory) {
+            this.modId = modId;
+            this.directory = directory;
+        }
+
+        @Override
+        protected ModClasses compute() {
+            LOGGER.trace("Scanning children of directory \"{}\"", directory);
+            ObjectArrayList<RecursiveTask<ModClasses>> subtasks = new ObjectArrayList<>();
+            ObjectArrayList<Path> classFiles = new ObjectArrayList<>();
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory)) {
+                for (Path child : ds) {
+                    if (Files.isDirectory(child))
+                        subtasks.add(new ScanDirectoryTask(modId, child));
+                    else if (child.getFileName().toString().endsWith(".class"))
+                        classFiles.add(child);
+                }
             } catch (IOException e) {
-                LOGGER.error("Failed to scan directory \"" + path.toString() + "\"!", e);
+                LOGGER.error("Failed to scan directory \"" + directory.toString() + "\"!", e);
+            }
+            if (!classFiles.isEmpty())
+                subtasks.add(new ScanClassesTask(modId, classFiles.toArray(new Path[0]), 0, classFiles.size()));
+            ModClasses results = new ModClasses(modId, EntityScanReport.Source.SCAN);
+            for (RecursiveTask<ModClasses> subtask : invokeAll(subtasks))
+                results.addAll(subtask.join());
+            return results;
+        }
+    }
+
+    // splits a range of class files in half until it's small enough to scan directly
+    private final class ScanClassesTask extends RecursiveTask<ModClasses> {
+        private final String modId;
+        private final Path[] classFiles;
+        private final int from, to;
+
+        public ScanClassesTask(@NotNull String modId, @NotNull Path[] classFiles, int from, int to) {
+            this.modId = modId;
+            this.classFiles = classFiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ModClasses compute() {
+            if (to - from > CLASS_BATCH_SIZE) {
+                int mid = (from + to) >>> 1;
+                ScanClassesTask left = new ScanClassesTask(modId, classFiles, from, mid);
+                left.fork();
+                ModClasses results = new ScanClassesTask(modId, classFiles, mid, to).compute();
+                results.addAll(left.join());
+                return results;
             }
-            return sum;
-        } else {
-            String fileName = path.getFileName().toString();
-            if (fileName.endsWith(".class")) {
-                String pathString = path.toString();
-                String quickClassName = pathString.substring(1, pathString.length() - ".class".length());
-                if (mixinClassNames.contains(quickClassName) || entityClassNamesSync.contains(quickClassName))
-                    return 0;
+            final long startTime = System.nanoTime();
+            ModClasses results = new ModClasses(modId, EntityScanReport.Source.SCAN);
+            for (int i = from; i < to; i++) {
+                Path path = classFiles[i];
                 LOGGER.trace("Scanning class \"{}\"", path);
-                try (InputStream is = Files.newInputStream(path)) {
-                    if (scanClass(is, resultConsumer))
-                        return 1;
+                try {
+                    scanClass(path, results);
                 } catch (IOException e) {
                     LOGGER.error("Failed to scan class \"" + path.toString() + "\"!", e);
                 }
             }
-            return 0;
+            results.busyNanos = System.nanoTime() - startTime;
+            return results;
         }
     }
 
-    private boolean scanClass(@NotNull InputStream is, @NotNull Consumer<String> resultConsumer) throws IOException {
-        ClassReader reader = new ClassReader(is);
-        String className = reader.getClassName();
-        if (entityClassNamesSync.contains(reader.getSuperName())) {
-            MixinChecker checker = tlChecker.get();
-            reader.accept(checker, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
-            if (checker.isMixin) {
-                mixinClassNames.add(className);
-                return false;
-            } else if (entityClassNamesSync.add(className)) {
-                LOGGER.debug("Found entity subclass \"{}\"", className);
-                resultConsumer.accept(className);
-                foundNewEntityThisPass.set(true);
-                return true;
-            }
+    private void scanClass(@NotNull Path path, @NotNull ModClasses results) throws IOException {
+        // we only need the class's name, superclass and annotations, so don't bother with a full ClassReader
+        ClassHeaderParser parser = tlParser.get();
+        parser.parse(path);
+        results.bytesRead += parser.getLength();
+        results.classesParsed++;
+        String superName = parser.getSuperName();
+        if (superName == null)
+            return; // java/lang/Object or module-info
+        if (superName.startsWith("java/")) {
+            // Entity extends Object directly, so nothing that extends a JDK class can be an entity
+            results.jdkSubclassesSkipped++;
+            return;
         }
-        return false;
+        if (parser.isMixin())
+            results.mixinsSkipped++;
+        else
+            results.add(parser.getClassName(), superName);
     }
 }
@@ -0,0 +1,17 @@
+package io.github.speedbridgemc.entityevents.impl;
+
+import org.jetbrains.annotations.NotNull;
+
+import net.minecraft.world.World;
+
+public interface EntityHooks {
+    // every dimension shares the overworld's time, so the stamp has to include the world - otherwise an entity that
+    // changed dimension mid-tick would get its old world's result instead of running the new world's listeners
+    boolean entityevents$isTickStamped(@NotNull World world, long time);
+    boolean entityevents$getTickResult();
+    void entityevents$setTickResult(@NotNull World world, long time, boolean cancelled);
+
+    // returns the depth before entering, i.e. 0 for the outermost damage call
+    int entityevents$enterDamage();
+    void entityevents$exitDamage();
+}
@@ -5,6 +5,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.*;
 
@@ -15,45 +16,154 @@ public final class EventCallbackInjector {
     public static final Logger LOGGER = LogManager.getLogger("EntityEvents|EventCallbackInjector");
 
     public static void transform(@NotNull ClassNode classNode) {
+        // invokedynamic needs at least a Java 7 class file
+        boolean useIndy = (classNode.version & 0xFFFF) >= Opcodes.V1_7;
         for (MethodNode method : classNode.methods) {
             if ((method.access & Opcodes.ACC_PUBLIC) == 0)
                 continue; // ignore non-public methods, since they can't be overriding Entity.damage
+            if ((method.access & Opcodes.ACC_ABSTRACT) != 0)
+                continue; // nothing to wrap
             if (MappedNames.matchesDamageMethod(method.name, method.desc)) {
                 LOGGER.debug("Injecting damage event callback into {}.{}{}",
                         classNode.name.replace('/', '.'), method.name, method.desc);
-                method.instructions.insert(getDamageInjectionInstructions());
+                injectDamageHook(method, useIndy);
             }
         }
     }
 
     private static @NotNull String getBinaryName(@NotNull Class<?> clazz) {
-        return clazz.getName().replace('/', '.');
+        return clazz.getName().replace('.', '/');
     }
 
     private static final String DAMAGE_INTERNALS_NAME = getBinaryName(DamageInternals.class);
+    private static final Handle DAMAGE_HOOK_BOOTSTRAP = new Handle(Opcodes.H_INVOKESTATIC,
+            DAMAGE_INTERNALS_NAME, "bootstrapHook",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;",
+            false);
 
     @SuppressWarnings("CommentedOutCode")
-    private static InsnList getDamageInjectionInstructions() {
+    private static void injectDamageHook(@NotNull MethodNode method, boolean useIndy) {
+        // wrap the method like so:
+        /*
+        int state = <enter hook>(this);
+        try {
+            if (state == DAMAGE_OUTERMOST && <damage hook>(this, source, amount))
+                return false;
+            <original method body>
+        } finally {
+            if (state != DAMAGE_UNTRACKED)
+                DamageInternals.exitDamage(this);
+        }
+         */
+        // entering/exiting tracks how many damage methods are running for this entity, so that only the outermost
+        // one (and not every super.damage call after it) fires events
+        // the enter hook is linked and unlinked together with the damage hook (see DamageInternals.bootstrapHook),
+        // so while nothing is listening, state is a constant DAMAGE_UNTRACKED and the JIT can throw all of this away
+        // in old class files, it's DamageInternals.active ? DamageInternals.enterDamage(this) : DAMAGE_UNTRACKED instead
+
+        final int stateIndex = method.maxLocals++;
+        final LabelNode tryStart = new LabelNode();
+        final LabelNode tryEnd = new LabelNode();
+        final LabelNode handler = new LabelNode();
+
+        // exit before every existing return (the only return opcode a boolean method can have)
+        for (AbstractInsnNode insn : method.instructions.toArray()) {
+            if (insn.getOpcode() == Opcodes.IRETURN)
+                method.instructions.insertBefore(insn, getExitInstructions(stateIndex));
+        }
+
+        final InsnList prologue = new InsnList();
+        prologue.add(getEnterInstructions(useIndy));
+        prologue.add(new VarInsnNode(Opcodes.ISTORE, stateIndex));
+        prologue.add(tryStart);
+        prologue.add(getDamageInjectionInstructions(stateIndex, useIndy));
+        method.instructions.insert(prologue);
+
+        // on exceptions, exit and rethrow
+        method.instructions.add(tryEnd);
+        method.instructions.add(handler);
+        method.instructions.add(getExitInstructions(stateIndex));
+        method.instructions.add(new InsnNode(Opcodes.ATHROW));
+        // added last, so that the method's own handlers take priority
+        method.tryCatchBlocks.add(new TryCatchBlockNode(tryStart, tryEnd, handler, null));
+    }
+
+    private static @NotNull InsnList getEnterInstructions(boolean useIndy) {
         final InsnList insns = new InsnList();
+        if (useIndy) {
+            insns.add(new VarInsnNode(Opcodes.ALOAD, 0)); // this
+            insns.add(new InvokeDynamicInsnNode(DamageInternals.HOOK_ENTER, MappedNames.METHOD_EVENT_DAMAGE_ENTER_DESC,
+                    DAMAGE_HOOK_BOOTSTRAP));
+        } else {
+            final LabelNode untrackedLabel = new LabelNode();
+            final LabelNode doneLabel = new LabelNode();
+            insns.add(new FieldInsnNode(Opcodes.GETSTATIC, DAMAGE_INTERNALS_NAME, "active", "Z"));
+            insns.add(new JumpInsnNode(Opcodes.IFEQ, untrackedLabel));
+            insns.add(new VarInsnNode(Opcodes.ALOAD, 0)); // this
+            insns.add(new MethodInsnNode(Opcodes.INVOKESTATIC,
+                    DAMAGE_INTERNALS_NAME,
+                    "enterDamage", MappedNames.METHOD_EVENT_DAMAGE_ENTER_DESC));
+            insns.add(new JumpInsnNode(Opcodes.GOTO, doneLabel));
+            insns.add(untrackedLabel);
+            insns.add(new LdcInsnNode(DamageInternals.DAMAGE_UNTRACKED));
+            insns.add(doneLabel);
+        }
+        return insns;
+    }
 
-        // inject the following code block into the top of the method:
+    private static @NotNull InsnList getExitInstructions(int stateIndex) {
+        final InsnList insns = new InsnList();
+        final LabelNode skipLabel = new LabelNode();
+        // only exit if we actually entered - the hooks may have been linked while this method was running
+        insns.add(new VarInsnNode(Opcodes.ILOAD, stateIndex));
+        insns.add(new LdcInsnNode(DamageInternals.DAMAGE_UNTRACKED));
+        insns.add(new JumpInsnNode(Opcodes.IF_ICMPEQ, skipLabel));
+        insns.add(new VarInsnNode(Opcodes.ALOAD, 0)); // this
+        insns.add(new MethodInsnNode(Opcodes.INVOKESTATIC,
+                DAMAGE_INTERNALS_NAME,
+                "exitDamage", MappedNames.METHOD_EVENT_DAMAGE_EXIT_DESC));
+        insns.add(skipLabel);
+        return insns;
+    }
+
+    @SuppressWarnings("CommentedOutCode")
+    private static @NotNull InsnList getDamageInjectionInstructions(int stateIndex, boolean useIndy) {
+        final InsnList insns = new InsnList();
+
+        // the following code block goes at the top of the try block:
         /*
-        if (DamageInternals.invoke(this, source, amount))
+        if (state == DAMAGE_OUTERMOST && <damage hook>(this, source, amount)) {
+            DamageInternals.exitDamage(this);
             return false;
+        }
          */
+        // the hook is an invokedynamic call site that returns a constant false until a listener that might apply
+        // to this class is registered (see DamageInternals.bootstrapHook), so the JIT can throw it away entirely
+        // in old class files, it's DamageInternals.invoke(this, source, amount) instead - state is only
+        // DAMAGE_OUTERMOST if DamageInternals.active was set when entering
 
         final LabelNode continueLabel = new LabelNode();
 
+        // nested (and untracked) damage calls don't fire events
+        insns.add(new VarInsnNode(Opcodes.ILOAD, stateIndex));
+        insns.add(new LdcInsnNode(DamageInternals.DAMAGE_OUTERMOST));
+        insns.add(new JumpInsnNode(Opcodes.IF_ICMPNE, continueLabel));
         // load up ze locals
         insns.add(new VarInsnNode(Opcodes.ALOAD, 0)); // this
         insns.add(new VarInsnNode(Opcodes.ALOAD, 1)); // source
         insns.add(new VarInsnNode(Opcodes.FLOAD, 2)); // amount
         // invoke our damage events
-        insns.add(new MethodInsnNode(Opcodes.INVOKESTATIC,
-                DAMAGE_INTERNALS_NAME,
-                "invoke", MappedNames.METHOD_EVENT_DAMAGE_INVOKE_DESC));
-        // check if we should cancel - if yes, return true
+        if (useIndy) {
+            insns.add(new InvokeDynamicInsnNode(DamageInternals.HOOK_DAMAGE, MappedNames.METHOD_EVENT_DAMAGE_INVOKE_DESC,
+                    DAMAGE_HOOK_BOOTSTRAP));
+        } else {
+            insns.add(new MethodInsnNode(Opcodes.INVOKESTATIC,
+                    DAMAGE_INTERNALS_NAME,
+                    "invoke", MappedNames.METHOD_EVENT_DAMAGE_INVOKE_DESC));
+        }
+        // check if we should cancel - if yes, exit and return false
         insns.add(new JumpInsnNode(Opcodes.IFEQ, continueLabel));
+        insns.add(getExitInstructions(stateIndex));
         insns.add(new InsnNode(Opcodes.ICONST_0));
         insns.add(new InsnNode(Opcodes.IRETURN));
         // otherwise, continue with the rest of the method
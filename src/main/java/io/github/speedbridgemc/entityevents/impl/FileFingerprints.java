@@ -0,0 +1,145 @@
+package io.github.speedbridgemc.entityevents.impl;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// cheap ways to tell whether a mod file has changed since we last scanned it
+final class FileFingerprints {
+    private FileFingerprints() { }
+
+    private static final int EOCD_SIGNATURE = 0x06054B50;
+    private static final int EOCD_SIZE = 22;
+    // the EOCD record is followed by a comment of up to 65535 bytes
+    private static final int EOCD_MAX_SEARCH = EOCD_SIZE + 0xFFFF;
+    // files are read in chunks of this size, must be a multiple of 8 (see hash)
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final ThreadLocal<MessageDigest> TL_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to get SHA-256 MessageDigest instance!", e);
+        }
+    });
+
+    public static void initialize() { /* clinit */ }
+
+    // everything is read onto the heap instead of being mapped - on Windows, a mapping keeps the file locked
+    // until it's garbage collected, which would stop mod managers from updating the jar
+    public static @NotNull String fingerprint(@NotNull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (Flags.FULL_CHECKSUMS)
+                return "sha256:" + sha256(channel);
+            return "cd:" + toHex(centralDirectoryHash(channel));
+        }
+    }
+
+    // the central directory has the name, size and CRC-32 of every entry, so hashing it is (almost) as good as
+    // hashing the whole jar, at a fraction of the cost
+    private static long centralDirectoryHash(@NotNull FileChannel channel) throws IOException {
+        final long size = channel.size();
+        final int tailSize = (int) Math.min(size, EOCD_MAX_SEARCH);
+        final long tailStart = size - tailSize;
+        ByteBuffer tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, tail, tailStart);
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) != EOCD_SIGNATURE)
+                continue;
+            long cdSize = tail.getInt(i + 12) & 0xFFFFFFFFL;
+            long cdOffset = tail.getInt(i + 16) & 0xFFFFFFFFL;
+            // if this doesn't add up, it's either a stray signature or a ZIP64 file - keep looking
+            if (cdOffset + cdSize == tailStart + i)
+                return hash(channel, cdOffset, cdSize);
+        }
+        // not a zip we understand, just hash all of it
+        return hash(channel, 0, size);
+    }
+
+    private static @NotNull String sha256(@NotNull FileChannel channel) throws IOException {
+        MessageDigest digest = TL_DIGEST.get();
+        ByteBuffer buf = ByteBuffer.allocate(CHUNK_SIZE);
+        byte[] bytes;
+        try {
+            while (channel.read(buf) >= 0) {
+                buf.flip();
+                digest.update(buf);
+                buf.clear();
+            }
+            bytes = digest.digest();
+        } finally {
+            // digest() already resets it, but a failed read would leave half a file in this thread's digest
+            digest.reset();
+        }
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static void readFully(@NotNull FileChannel channel, @NotNull ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int read = channel.read(buf, position);
+            if (read < 0)
+                throw new EOFException("File ended " + buf.remaining() + " bytes early");
+            position += read;
+        }
+        buf.flip();
+    }
+
+    // 64-bit MurmurHash3-style mix over length bytes starting at position, not cryptographic (and doesn't need to be)
+    // chunks are a multiple of 8 bytes, so only the last one can have a partial block
+    private static long hash(@NotNull FileChannel channel, long position, long length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(length, CHUNK_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+        long h = length;
+        for (long remaining = length; remaining > 0; ) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), remaining));
+            readFully(channel, buf, position);
+            position += buf.remaining();
+            remaining -= buf.remaining();
+            while (buf.remaining() >= 8) {
+                h ^= mix(buf.getLong());
+                h = Long.rotateLeft(h, 27) * 5 + 0x52DCE729L;
+            }
+            if (buf.hasRemaining()) {
+                long k = 0;
+                for (int shift = 0; buf.hasRemaining(); shift += 8)
+                    k |= (buf.get() & 0xFFL) << shift;
+                h ^= mix(k);
+            }
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long mix(long k) {
+        k *= 0x87C37B91114253D5L;
+        k = Long.rotateLeft(k, 31);
+        k *= 0x4CF5AD432745937FL;
+        return k;
+    }
+
+    private static @NotNull String toHex(long value) {
+        char[] chars = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            chars[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.speedbridgemc.entityevents.impl;
+
+import org.jetbrains.annotations.ApiStatus;
+
+@ApiStatus.Internal
+public final class Flags {
+    private Flags() { }
+
+    private static final String PREFIX = "entityevents.";
+
+    // generate a specialized invoker class for each entity class instead of walking the listener arrays
+    public static final boolean GENERATE_INVOKERS = Boolean.getBoolean(PREFIX + "generateInvokers");
+
+    // always hash the full contents of mod files, instead of trusting their size, modification time and zip index
+    public static final boolean FULL_CHECKSUMS = Boolean.getBoolean(PREFIX + "fullChecksums");
+
+    // how many threads to fingerprint and scan mods with
+    public static final int SCAN_PARALLELISM = Integer.getInteger(PREFIX + "scanThreads", Runtime.getRuntime().availableProcessors());
+
+    // detect entity classes as they're loaded instead of scanning every mod at startup
+    public static final boolean LAZY_DETECTION = Boolean.getBoolean(PREFIX + "lazyDetection");
+
+    // how many damage snapshots can wait for async listeners at once
+    public static final int ASYNC_QUEUE_CAPACITY = Integer.getInteger(PREFIX + "asyncQueueCapacity", 4096);
+
+    // what to do when async listeners fall behind: "drop", "block" or "sample"
+    public static final String ASYNC_OVERFLOW = System.getProperty(PREFIX + "asyncOverflow", "drop");
+
+    // with the sample overflow policy, only queue every nth snapshot once the queue is half full
+    public static final int ASYNC_SAMPLE_RATE = Integer.getInteger(PREFIX + "asyncSampleRate", 8);
+}
@@ -3,14 +3,30 @@ package io.github.speedbridgemc.entityevents.impl;
 import io.github.speedbridgemc.entityevents.impl.event.DamageInternals;
 import io.github.speedbridgemc.entityevents.impl.event.TickInternals;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 
 public final class Initializer implements ModInitializer {
     @Override
     public void onInitialize() {
+        // type plans hold tag contents, and each server (e.g. every integrated server session) has its own tags
+        ServerLifecycleEvents.SERVER_STARTING.register(server -> {
+            TickInternals.onTagsReloaded();
+            DamageInternals.onTagsReloaded();
+        });
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, serverResourceManager, success) -> {
+            TickInternals.onTagsReloaded();
+            DamageInternals.onTagsReloaded();
+        });
         ServerTickEvents.END_WORLD_TICK.register(world -> {
-            TickInternals.endTick(world);
-            DamageInternals.endTick(world);
+            TickInternals.flushDeferred();
+            DamageInternals.flushDeferred();
+        });
+        // every world unloads when the server stops, so this also covers leaving an integrated server
+        ServerWorldEvents.UNLOAD.register((server, world) -> {
+            TickInternals.onWorldUnloaded(world);
+            DamageInternals.onWorldUnloaded(world);
         });
     }
 }
@@ -0,0 +1,148 @@
+package io.github.speedbridgemc.entityevents.impl;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+import org.spongepowered.asm.mixin.transformer.ClassInfo;
+import org.spongepowered.asm.mixin.transformer.IMixinTransformer;
+import org.spongepowered.asm.transformers.MixinClassWriter;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+// decides whether a class is an entity class as it's being loaded, instead of scanning every mod upfront
+// works by wrapping the mixin transformer Knot passes every class through, so it's only as stable as Knot's internals
+public final class LazyEntityTransformer implements InvocationHandler {
+    private static final Logger LOGGER = LogManager.getLogger("EntityEvents|LazyEntityTransformer");
+    // how many fields deep to look for the transformer, starting from the class loader
+    private static final int MAX_SEARCH_DEPTH = 3;
+    private static final ConcurrentHashMap<String, Boolean> ENTITY_CLASSES = new ConcurrentHashMap<>();
+
+    private final Object delegate;
+
+    private LazyEntityTransformer(@NotNull Object delegate) {
+        this.delegate = delegate;
+    }
+
+    public static boolean install() {
+        // load these before we start transforming, since we'll be running in the middle of class loading
+        MappedNames.initialize();
+        Class<?>[] preload = { EventCallbackInjector.class, ClassReader.class, ClassNode.class, ClassWriter.class,
+                MixinClassWriter.class, ClassInfo.class };
+        LOGGER.debug("Preloaded {} classes", preload.length);
+
+        ClassLoader loader = LazyEntityTransformer.class.getClassLoader();
+        try {
+            if (wrapTransformer(loader, 0)) {
+                LOGGER.info("Entity classes will be detected as they're loaded.");
+                return true;
+            }
+            LOGGER.error("Couldn't find the mixin transformer to wrap!");
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.error("Failed to wrap the mixin transformer!", e);
+        }
+        return false;
+    }
+
+    // walks the class loader's fields until it finds one holding the mixin transformer, then swaps in a proxy
+    private static boolean wrapTransformer(@NotNull Object holder, int depth) throws ReflectiveOperationException {
+        for (Class<?> clazz = holder.getClass(); clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive() || field.getType().isArray())
+                    continue;
+                field.setAccessible(true);
+                Object value = field.get(holder);
+                if (value == null)
+                    continue;
+                if (value instanceof IMixinTransformer && field.getType().isInterface()) {
+                    if (Proxy.isProxyClass(value.getClass()) && Proxy.getInvocationHandler(value) instanceof LazyEntityTransformer)
+                        return true; // already installed
+                    field.set(holder, Proxy.newProxyInstance(LazyEntityTransformer.class.getClassLoader(),
+                            getAllInterfaces(value.getClass()), new LazyEntityTransformer(value)));
+                    LOGGER.debug("Wrapped transformer in field {}.{}", clazz.getName(), field.getName());
+                    return true;
+                }
+                // only dig through the loader's own objects
+                if (depth < MAX_SEARCH_DEPTH && value.getClass().getName().startsWith("net.fabricmc.")
+                        && wrapTransformer(value, depth + 1))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static @NotNull Class<?> @NotNull [] getAllInterfaces(@NotNull Class<?> clazz) {
+        LinkedHashSet<Class<?>> interfaces = new LinkedHashSet<>();
+        for (; clazz != null; clazz = clazz.getSuperclass())
+            Collections.addAll(interfaces, clazz.getInterfaces());
+        return interfaces.toArray(new Class<?>[0]);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Object result;
+        try {
+            result = method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+        // transformClassBytes(String name, String transformedName, byte[] basicClass)
+        if ("transformClassBytes".equals(method.getName()) && method.getParameterCount() == 3 && result instanceof byte[]) {
+            try {
+                return transform((byte[]) result);
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to transform class \"" + args[0] + "\"!", e);
+            }
+        }
+        return result;
+    }
+
+    private static byte @NotNull [] transform(byte @NotNull [] bytes) {
+        ClassReader reader = new ClassReader(bytes);
+        if (!isEntityClass(reader.getClassName(), reader.getSuperName()))
+            return bytes;
+        LOGGER.debug("Transforming entity class \"{}\"", reader.getClassName());
+        ClassNode node = new ClassNode();
+        reader.accept(node, 0);
+        EventCallbackInjector.transform(node);
+        // Mixin's writer looks up common superclasses through its own metadata, so this doesn't load anything
+        ClassWriter writer = new MixinClassWriter(ClassWriter.COMPUTE_FRAMES);
+        node.accept(writer);
+        return writer.toByteArray();
+    }
+
+    private static boolean isEntityClass(@NotNull String name, @Nullable String superName) {
+        if (MappedNames.CLASS_ENTITY.equals(name))
+            return true;
+        boolean result = isEntityClass(superName);
+        ENTITY_CLASSES.put(name, result);
+        return result;
+    }
+
+    // the class being loaded isn't defined yet, and neither (necessarily) are its superclasses,
+    // so walk up their headers through Mixin's class metadata, which reads them without loading them
+    private static boolean isEntityClass(@Nullable String name) {
+        if (name == null || name.startsWith("java/"))
+            return false;
+        if (MappedNames.CLASS_ENTITY.equals(name))
+            return true;
+        Boolean known = ENTITY_CLASSES.get(name);
+        if (known != null)
+            return known;
+        ClassInfo info = ClassInfo.forName(name);
+        boolean result = info != null && !info.isInterface() && isEntityClass(info.getSuperName());
+        ENTITY_CLASSES.put(name, result);
+        return result;
+    }
+}
@@ -14,6 +14,8 @@ public final class MappedNames {
     public static final @NotNull String METHOD_ENTITY_DAMAGE_NAME;
     public static final @NotNull String METHOD_ENTITY_DAMAGE_DESC;
     public static final @NotNull String METHOD_EVENT_DAMAGE_INVOKE_DESC;
+    public static final @NotNull String METHOD_EVENT_DAMAGE_ENTER_DESC;
+    public static final @NotNull String METHOD_EVENT_DAMAGE_EXIT_DESC;
 
     static {
         final String ns = "intermediary";
@@ -24,6 +26,8 @@ public final class MappedNames {
                 "method_5643", "(Lnet/minecraft/class_1282;F)Z");
         METHOD_ENTITY_DAMAGE_DESC = String.format("(L%s;F)Z", CLASS_DAMAGE_SOURCE);
         METHOD_EVENT_DAMAGE_INVOKE_DESC = String.format("(L%s;L%s;F)Z", CLASS_ENTITY, CLASS_DAMAGE_SOURCE);
+        METHOD_EVENT_DAMAGE_ENTER_DESC = String.format("(L%s;)I", CLASS_ENTITY);
+        METHOD_EVENT_DAMAGE_EXIT_DESC = String.format("(L%s;)V", CLASS_ENTITY);
     }
 
     // converts class name from canonical to binary
@@ -0,0 +1,217 @@
+package io.github.speedbridgemc.entityevents.impl;
+
+import com.google.gson.stream.JsonWriter;
+import io.github.speedbridgemc.entityevents.api.EntityScanReport;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+public final class ScanMetrics implements EntityScanReport {
+    public static final class ModMetrics implements Mod {
+        private final String modId;
+        private final Source source;
+        private final int classCount;
+        private final long bytesRead, scanNanos;
+
+        public ModMetrics(@NotNull String modId, @NotNull Source source, int classCount, long bytesRead, long scanNanos) {
+            this.modId = modId;
+            this.source = source;
+            this.classCount = classCount;
+            this.bytesRead = bytesRead;
+            this.scanNanos = scanNanos;
+        }
+
+        @Override
+        public @NotNull String getModId() {
+            return modId;
+        }
+
+        @Override
+        public @NotNull Source getSource() {
+            return source;
+        }
+
+        @Override
+        public int getClassCount() {
+            return classCount;
+        }
+
+        @Override
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        @Override
+        public long getScanNanos() {
+            return scanNanos;
+        }
+    }
+
+    private static final Logger LOGGER = LogManager.getLogger("EntityEvents|ScanMetrics");
+    private static volatile @Nullable ScanMetrics lastReport;
+
+    public static @Nullable ScanMetrics getLastReport() {
+        return lastReport;
+    }
+
+    // set by the scanner as it goes
+    public long totalNanos, cacheLoadNanos, fingerprintNanos, scanNanos, graphNanos, cacheSaveNanos;
+    public int parallelism;
+    public long busyNanos;
+    public long bytesRead;
+    public int classesParsed, mixinsSkipped, jdkSubclassesSkipped;
+    public int entityClassCount;
+    private final ObjectArrayList<ModMetrics> mods = new ObjectArrayList<>();
+
+    public void addMod(@NotNull ModMetrics mod) {
+        mods.add(mod);
+    }
+
+    public void publish(@NotNull Path path) {
+        lastReport = this;
+        try {
+            Files.createDirectories(path.getParent());
+        } catch (IOException e) {
+            LOGGER.error("Failed to create folder to save scan report!", e);
+            return;
+        }
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+             JsonWriter json = new JsonWriter(writer)) {
+            json.setIndent("  ");
+            json.beginObject();
+            json.name("phases_ms").beginObject();
+            json.name("total").value(toMillis(totalNanos));
+            json.name("cache_load").value(toMillis(cacheLoadNanos));
+            json.name("fingerprint").value(toMillis(fingerprintNanos));
+            json.name("scan").value(toMillis(scanNanos));
+            json.name("graph").value(toMillis(graphNanos));
+            json.name("cache_save").value(toMillis(cacheSaveNanos));
+            json.endObject();
+            json.name("parallelism").value(parallelism);
+            json.name("thread_utilization").value(getThreadUtilization());
+            json.name("cache_hits").value(getCacheHits());
+            json.name("cache_misses").value(getCacheMisses());
+            json.name("bytes_read").value(bytesRead);
+            json.name("classes_parsed").value(classesParsed);
+            json.name("mixins_skipped").value(mixinsSkipped);
+            json.name("jdk_subclasses_skipped").value(jdkSubclassesSkipped);
+            json.name("entity_classes").value(entityClassCount);
+            json.name("mods").beginArray();
+            for (ModMetrics mod : mods) {
+                json.beginObject();
+                json.name("id").value(mod.modId);
+                json.name("source").value(mod.source.name().toLowerCase(Locale.ROOT));
+                json.name("classes").value(mod.classCount);
+                json.name("bytes_read").value(mod.bytesRead);
+                json.name("scan_ms").value(toMillis(mod.scanNanos));
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        } catch (IOException e) {
+            LOGGER.error("Failed to write scan report!", e);
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public long getCacheLoadNanos() {
+        return cacheLoadNanos;
+    }
+
+    @Override
+    public long getFingerprintNanos() {
+        return fingerprintNanos;
+    }
+
+    @Override
+    public long getScanNanos() {
+        return scanNanos;
+    }
+
+    @Override
+    public long getGraphNanos() {
+        return graphNanos;
+    }
+
+    @Override
+    public long getCacheSaveNanos() {
+        return cacheSaveNanos;
+    }
+
+    @Override
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public double getThreadUtilization() {
+        if (scanNanos <= 0 || parallelism <= 0)
+            return 0;
+        return Math.min(1, busyNanos / ((double) scanNanos * parallelism));
+    }
+
+    @Override
+    public int getCacheHits() {
+        int hits = 0;
+        for (ModMetrics mod : mods) {
+            if (mod.source == Source.CACHE || mod.source == Source.FINGERPRINT)
+                hits++;
+        }
+        return hits;
+    }
+
+    @Override
+    public int getCacheMisses() {
+        return mods.size() - getCacheHits();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public int getClassesParsed() {
+        return classesParsed;
+    }
+
+    @Override
+    public int getMixinsSkipped() {
+        return mixinsSkipped;
+    }
+
+    @Override
+    public int getJdkSubclassesSkipped() {
+        return jdkSubclassesSkipped;
+    }
+
+    @Override
+    public int getEntityClassCount() {
+        return entityClassCount;
+    }
+
+    @Override
+    public @NotNull List<ModMetrics> getMods() {
+        return Collections.unmodifiableList(mods);
+    }
+}
@@ -1,106 +1,226 @@
 package io.github.speedbridgemc.entityevents.impl;
 
-import blue.endless.jankson.*;
-import blue.endless.jankson.api.SyntaxError;
-import com.google.common.collect.ImmutableSet;
-import it.unimi.dsi.fastutil.objects.Object2ReferenceMap;
-import it.unimi.dsi.fastutil.objects.Object2ReferenceOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ReferenceCollection;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.*;
 import net.fabricmc.loader.api.FabricLoader;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public final class ScanResultCache {
     public static final class Entry {
         public final @NotNull String modId;
         public final @Nullable String fileChecksum;
-        public final @NotNull ImmutableSet<String> entitySubclasses;
+        public final long fileSize, fileModified;
+        // every class in the mod that could extend Entity, and the class each of them extends
+        public final @NotNull List<String> classNames, superNames;
 
-        public Entry(@NotNull String modId, @Nullable String fileChecksum, @NotNull ImmutableSet<String> entitySubclasses) {
+        public Entry(@NotNull String modId, @Nullable String fileChecksum, long fileSize, long fileModified,
+                     @NotNull List<String> classNames, @NotNull List<String> superNames) {
             this.modId = modId;
             this.fileChecksum = fileChecksum;
-            this.entitySubclasses = entitySubclasses;
+            this.fileSize = fileSize;
+            this.fileModified = fileModified;
+            this.classNames = classNames;
+            this.superNames = superNames;
         }
     }
 
+    // binary format (big-endian):
+    //   u4 magic, u2 version
+    //   u4 string count, then each string as u2 byte length + UTF-8 bytes
+    //   u4 class count, then each class as u4 class name string index + u4 superclass name string index
+    //   u4 entry count, then each entry as:
+    //     u4 mod ID string index, u4 checksum string index (or -1),
+    //     s8 file size, s8 file modification time,
+    //     u4 first class index, u4 class count
+    private static final int MAGIC = 0x45455343; // "EESC"
+    private static final short VERSION = 2;
+
     private static final Logger LOGGER = LogManager.getLogger("EntityEvents|ScanResultCache");
-    private final Path path = FabricLoader.getInstance().getConfigDir().resolve("speedbridge")
-            .resolve("entity-events").resolve("scan_cache.json5").normalize();
-    private final Jankson jankson = Jankson.builder().build();
-    private final JsonGrammar grammar = JsonGrammar.builder()
-            .printTrailingCommas(true)
-            .build();
+    private final Path directory = FabricLoader.getInstance().getConfigDir().resolve("speedbridge")
+            .resolve("entity-events").normalize();
+    private final Path path = directory.resolve("scan_cache.bin");
     private final Object2ReferenceOpenHashMap<String, Entry> backingMap =
             new Object2ReferenceOpenHashMap<>();
+    private boolean dirty;
 
     public void load() {
         LOGGER.info("Loading scan result cache from \"{}\"...", path.toString());
         backingMap.clear();
-        try (InputStream input = Files.newInputStream(path)) {
-            JsonObject root = jankson.load(input);
-            for (String modId : root.keySet()) {
-                JsonObject entry = root.getObject(modId);
-                if (entry == null)
-                    continue;
-                String fileChecksum = entry.get(String.class, "file_checksum");
-                JsonArray classNames = entry.get(JsonArray.class, "entity_subclasses");
-                if (classNames == null)
-                    continue;
-                ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-                for (int j = 0; j < classNames.size(); j++) {
-                    String className = classNames.getString(j, "");
-                    if (className.isEmpty())
-                        continue;
-                    builder.add(className);
-                }
-                putEntry(new Entry(modId, fileChecksum, builder.build()));
-            }
+        dirty = false;
+        try {
+            // read onto the heap rather than mapping the file - read copies everything out anyway, and a live mapping
+            // would stop save from replacing the file on Windows
+            read(ByteBuffer.wrap(Files.readAllBytes(path)));
         } catch (NoSuchFileException e) {
             LOGGER.info("Scan result cache does not exist. Entity Events will now scan for Entity subclasses.");
-        } catch (IOException e) {
-            LOGGER.error("Failed to read cached results from file!", e);
-        } catch (SyntaxError e) {
-            LOGGER.error("Failed to parse cached results into JSON!", e);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            LOGGER.error("Failed to read cached results from file! Entity Events will now scan for Entity subclasses.", e);
+            backingMap.clear();
+            dirty = true;
+        }
+    }
+
+    private void read(@NotNull ByteBuffer buf) throws IOException {
+        if (buf.getInt() != MAGIC)
+            throw new IOException("Not a scan result cache file");
+        short version = buf.getShort();
+        if (version != VERSION)
+            throw new IOException("Unsupported scan result cache version " + version);
+
+        // every count is checked against what's left of the file before allocating anything, so a corrupt or
+        // truncated cache ends in a rescan instead of a huge (or negative) array
+        String[] strings = new String[readCount(buf, 2, "string")];
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            int length = buf.getShort() & 0xFFFF;
+            if (bytes.length < length)
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            buf.get(bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        String[] classNames = new String[readCount(buf, 8, "class")];
+        String[] superNames = new String[classNames.length];
+        for (int i = 0; i < classNames.length; i++) {
+            classNames[i] = readString(buf, strings);
+            superNames[i] = readString(buf, strings);
+        }
+
+        int entryCount = readCount(buf, 32, "entry");
+        for (int i = 0; i < entryCount; i++) {
+            String modId = readString(buf, strings);
+            int checksumIndex = buf.getInt();
+            if (checksumIndex >= strings.length)
+                throw new IOException("Checksum of mod \"" + modId + "\" is out of bounds");
+            long fileSize = buf.getLong();
+            long fileModified = buf.getLong();
+            int classStart = buf.getInt();
+            int classCount = buf.getInt();
+            if (classStart < 0 || classCount < 0 || classCount > classNames.length - classStart)
+                throw new IOException("Class range of mod \"" + modId + "\" is out of bounds");
+            backingMap.put(modId, new Entry(modId, checksumIndex < 0 ? null : strings[checksumIndex], fileSize, fileModified,
+                    Collections.unmodifiableList(Arrays.asList(classNames).subList(classStart, classStart + classCount)),
+                    Collections.unmodifiableList(Arrays.asList(superNames).subList(classStart, classStart + classCount))));
         }
     }
 
+    // reads a count of elements that each take at least elementSize bytes
+    private static int readCount(@NotNull ByteBuffer buf, int elementSize, @NotNull String what) throws IOException {
+        int count = buf.getInt();
+        if (count < 0 || count > buf.remaining() / elementSize)
+            throw new IOException("Invalid " + what + " count " + count + " with " + buf.remaining() + " bytes left");
+        return count;
+    }
+
+    private static @NotNull String readString(@NotNull ByteBuffer buf, @NotNull String @NotNull [] strings) throws IOException {
+        int index = buf.getInt();
+        if (index < 0 || index >= strings.length)
+            throw new IOException("String index " + index + " is out of bounds");
+        return strings[index];
+    }
+
     public void save() {
-        JsonObject root = new JsonObject();
-        for (Object2ReferenceMap.Entry<String, Entry> mapEntry : backingMap.object2ReferenceEntrySet()) {
-            Entry entry = mapEntry.getValue();
-            JsonObject entryJson = new JsonObject();
-            if (entry.fileChecksum != null)
-                entryJson.put("file_checksum", new JsonPrimitive(entry.fileChecksum));
-            JsonArray classNames = new JsonArray();
-            for (String className : entry.entitySubclasses)
-                classNames.add(new JsonPrimitive(className));
-            entryJson.put("entity_subclasses", classNames);
-            root.put(mapEntry.getKey(), entryJson);
+        if (!dirty) {
+            LOGGER.debug("Scan result cache is unchanged, not saving it");
+            return;
         }
-        String json = root.toJson(grammar);
         LOGGER.info("Caching and saving scan results to \"{}\"...", path.toString());
         try {
-            Files.createDirectories(path.getParent());
+            Files.createDirectories(directory);
         } catch (IOException e) {
             LOGGER.error("Failed to create folder to save cache results!", e);
             return;
         }
-        try (OutputStream output = Files.newOutputStream(path);
-             OutputStreamWriter writer = new OutputStreamWriter(output)) {
-            writer.write(json);
+
+        // build the string table first, so every string is only written once
+        Object2IntOpenHashMap<String> stringIndexes = new Object2IntOpenHashMap<>();
+        stringIndexes.defaultReturnValue(-1);
+        ObjectArrayList<String> strings = new ObjectArrayList<>();
+        IntArrayList classIndexes = new IntArrayList();
+        for (Entry entry : backingMap.values()) {
+            intern(stringIndexes, strings, entry.modId);
+            if (entry.fileChecksum != null)
+                intern(stringIndexes, strings, entry.fileChecksum);
+            for (int i = 0, size = entry.classNames.size(); i < size; i++) {
+                classIndexes.add(intern(stringIndexes, strings, entry.classNames.get(i)));
+                classIndexes.add(intern(stringIndexes, strings, entry.superNames.get(i)));
+            }
+        }
+
+        // write to a temporary file and move it over the real one, so a crash can't leave a half-written cache behind
+        Path tempPath = directory.resolve("scan_cache.bin.tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+            output.writeInt(strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > 0xFFFF)
+                    throw new IOException("String is too long to cache: " + string);
+                output.writeShort(bytes.length);
+                output.write(bytes);
+            }
+            output.writeInt(classIndexes.size() / 2);
+            for (int i = 0, size = classIndexes.size(); i < size; i++)
+                output.writeInt(classIndexes.getInt(i));
+            output.writeInt(backingMap.size());
+            int classStart = 0;
+            for (Entry entry : backingMap.values()) {
+                output.writeInt(stringIndexes.getInt(entry.modId));
+                output.writeInt(entry.fileChecksum == null ? -1 : stringIndexes.getInt(entry.fileChecksum));
+                output.writeLong(entry.fileSize);
+                output.writeLong(entry.fileModified);
+                output.writeInt(classStart);
+                output.writeInt(entry.classNames.size());
+                classStart += entry.classNames.size();
+            }
         } catch (IOException e) {
             LOGGER.error("Failed to save cached results!", e);
+            return;
         }
+        try {
+            try {
+                Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            LOGGER.error("Failed to replace cached results!", e);
+        }
+    }
+
+    private static int intern(@NotNull Object2IntOpenHashMap<String> stringIndexes, @NotNull ObjectArrayList<String> strings,
+                              @NotNull String string) {
+        int index = stringIndexes.getInt(string);
+        if (index < 0) {
+            index = strings.size();
+            strings.add(string);
+            stringIndexes.put(string, index);
+        }
+        return index;
+    }
+
+    public @NotNull Path getDirectory() {
+        return directory;
     }
 
     public @Nullable Entry getEntry(@NotNull String modId) {
@@ -109,13 +229,17 @@ public final class ScanResultCache {
 
     public void putEntry(@NotNull Entry entry) {
         backingMap.put(entry.modId, entry);
+        dirty = true;
     }
 
     public void removeEntry(@NotNull String modId) {
-        backingMap.remove(modId);
+        if (backingMap.remove(modId) != null)
+            dirty = true;
     }
 
-    public @NotNull ReferenceCollection<Entry> getAllEntries() {
-        return backingMap.values();
+    // drops the entries of every mod that isn't in the given set, i.e. mods that were removed
+    public void retainEntries(@NotNull ObjectSet<String> modIds) {
+        if (backingMap.keySet().retainAll(modIds))
+            dirty = true;
     }
 }
@@ -13,8 +13,14 @@ public interface ServerWorldHooks {
     static @NotNull WorldStorage getOrCreateWorldStorage(@NotNull ServerWorld world) {
         ServerWorldHooks hooks = (ServerWorldHooks) world;
         WorldStorage storage = hooks.entityevents$getWorldStorage();
-        if (storage == null)
-            hooks.entityevents$setWorldStorage(storage = new WorldStorage());
+        if (storage == null) {
+            // another world's thread might be damaging an entity in this world, so make sure only one storage is created
+            synchronized (hooks) {
+                storage = hooks.entityevents$getWorldStorage();
+                if (storage == null)
+                    hooks.entityevents$setWorldStorage(storage = new WorldStorage());
+            }
+        }
         return storage;
     }
 
@@ -1,34 +1,27 @@
 package io.github.speedbridgemc.entityevents.impl;
 
+import io.github.speedbridgemc.entityevents.impl.event.BatchTickInternals;
 import io.github.speedbridgemc.entityevents.impl.event.DamageInternals;
 import io.github.speedbridgemc.entityevents.impl.event.TickInternals;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Optional;
-
+// per-world event state - created up front and never replaced, so any thread can read it without locking
 public final class WorldStorage {
-    private DamageInternals damageInternals;
-    private TickInternals tickInternals;
+    private final DamageInternals damageInternals = new DamageInternals();
+    private final TickInternals tickInternals = new TickInternals();
+    private final BatchTickInternals batchTickInternals = new BatchTickInternals();
 
     WorldStorage() { }
 
-    public @NotNull Optional<DamageInternals> getDamageInternals() {
-        return Optional.ofNullable(damageInternals);
-    }
-
-    public @NotNull DamageInternals getOrCreateDamageInternals() {
-        if (damageInternals == null)
-            damageInternals = new DamageInternals();
+    public @NotNull DamageInternals getDamageInternals() {
         return damageInternals;
     }
 
-    public @NotNull Optional<TickInternals> getTickInternals() {
-        return Optional.ofNullable(tickInternals);
+    public @NotNull TickInternals getTickInternals() {
+        return tickInternals;
     }
 
-    public @NotNull TickInternals getOrCreateTickInternals() {
-        if (tickInternals == null)
-            tickInternals = new TickInternals();
-        return tickInternals;
+    public @NotNull BatchTickInternals getBatchTickInternals() {
+        return batchTickInternals;
     }
 }
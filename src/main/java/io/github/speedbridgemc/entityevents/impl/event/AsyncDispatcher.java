@@ -0,0 +1,225 @@
+package io.github.speedbridgemc.entityevents.impl.event;
+
+import io.github.speedbridgemc.entityevents.api.AsyncListenerMetrics;
+import io.github.speedbridgemc.entityevents.api.DamageSnapshot;
+import io.github.speedbridgemc.entityevents.api.EntityDamageEvents;
+import io.github.speedbridgemc.entityevents.impl.Flags;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// feeds async damage listeners from a bounded queue, so the threads dispatching events never run them
+// the queue itself is lock-free - the only way a dispatching thread waits is the block overflow policy
+public final class AsyncDispatcher implements AsyncListenerMetrics {
+    private enum OverflowPolicy {
+        DROP, BLOCK, SAMPLE
+    }
+
+    private static final class Pending {
+        public final DamageSnapshot snapshot;
+        public final EntityDamageEvents.Async[] listeners;
+
+        public Pending(@NotNull DamageSnapshot snapshot, @NotNull EntityDamageEvents.Async[] listeners) {
+            this.snapshot = snapshot;
+            this.listeners = listeners;
+        }
+    }
+
+    private static final Logger LOGGER = LogManager.getLogger("EntityEvents|AsyncDispatcher");
+    // how long a blocked dispatching thread sleeps between checking for space
+    private static final long BLOCK_PARK_NANOS = 50_000;
+
+    public static final AsyncDispatcher INSTANCE = new AsyncDispatcher();
+
+    private final int capacity = Math.max(1, Flags.ASYNC_QUEUE_CAPACITY);
+    private final OverflowPolicy policy = parsePolicy(Flags.ASYNC_OVERFLOW);
+    private final int sampleRate = Math.max(1, Flags.ASYNC_SAMPLE_RATE);
+
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size walks the whole queue, so track it separately
+    private final AtomicInteger size = new AtomicInteger();
+    // true while a drain task is scheduled or running, so there's only ever one
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile Executor executor;
+
+    private final LongAdder submitted = new LongAdder(), processed = new LongAdder(), dropped = new LongAdder(),
+            sampledOut = new LongAdder(), failures = new LongAdder(), blockedNanos = new LongAdder();
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final AtomicInteger peakSize = new AtomicInteger();
+
+    private AsyncDispatcher() { }
+
+    private static @NotNull OverflowPolicy parsePolicy(@NotNull String name) {
+        try {
+            return OverflowPolicy.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Unknown async overflow policy \"{}\", dropping snapshots instead", name);
+            return OverflowPolicy.DROP;
+        }
+    }
+
+    public void setExecutor(@NotNull Executor executor) {
+        this.executor = executor;
+    }
+
+    private @NotNull Executor getExecutor() {
+        Executor executor = this.executor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.executor;
+                if (executor == null)
+                    this.executor = executor = createDefaultExecutor();
+            }
+        }
+        return executor;
+    }
+
+    // a virtual thread per drain if the runtime has them, otherwise a single daemon thread
+    private static @NotNull Executor createDefaultExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.debug("Virtual threads aren't available, using a platform thread for async listeners");
+        }
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "EntityEvents Async Listeners");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void submit(@NotNull DamageSnapshot snapshot, @NotNull EntityDamageEvents.Async[] listeners) {
+        submitted.increment();
+        if (!reserve())
+            return;
+        queue.offer(new Pending(snapshot, listeners));
+        if (draining.compareAndSet(false, true))
+            scheduleDrain();
+    }
+
+    // claims a slot in the queue according to the overflow policy, returns false if the snapshot should be skipped
+    private boolean reserve() {
+        if (policy == OverflowPolicy.SAMPLE && size.get() >= capacity / 2
+                && sampleCounter.getAndIncrement() % sampleRate != 0) {
+            sampledOut.increment();
+            return false;
+        }
+        long blockStart = 0;
+        while (true) {
+            int current = size.get();
+            if (current < capacity) {
+                if (size.compareAndSet(current, current + 1)) {
+                    if (blockStart != 0)
+                        blockedNanos.add(System.nanoTime() - blockStart);
+                    updatePeak(current + 1);
+                    return true;
+                }
+                continue;
+            }
+            if (policy != OverflowPolicy.BLOCK) {
+                dropped.increment();
+                return false;
+            }
+            if (blockStart == 0) {
+                blockStart = System.nanoTime();
+                // make sure someone is actually emptying the queue we're waiting on
+                if (draining.compareAndSet(false, true))
+                    scheduleDrain();
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+    }
+
+    private void updatePeak(int current) {
+        int peak;
+        while (current > (peak = peakSize.get()) && !peakSize.compareAndSet(peak, current));
+    }
+
+    private void scheduleDrain() {
+        try {
+            getExecutor().execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            LOGGER.error("Async listener executor rejected a task, snapshots will queue up until the next damage event!", e);
+        }
+    }
+
+    private void drain() {
+        do {
+            Pending pending;
+            while ((pending = queue.poll()) != null) {
+                size.decrementAndGet();
+                for (EntityDamageEvents.Async listener : pending.listeners) {
+                    try {
+                        listener.onDamaged(pending.snapshot);
+                    } catch (Throwable t) {
+                        failures.increment();
+                        LOGGER.error("Async damage listener " + listener + " failed!", t);
+                    }
+                }
+                processed.increment();
+            }
+            draining.set(false);
+            // a snapshot might've been queued after the last poll, but before draining was reset
+        } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    @Override
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    @Override
+    public long getProcessed() {
+        return processed.sum();
+    }
+
+    @Override
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public long getSampledOut() {
+        return sampledOut.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getBlockedNanos() {
+        return blockedNanos.sum();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return size.get();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getPeakQueueSize() {
+        return peakSize.get();
+    }
+}
@@ -0,0 +1,303 @@
+package io.github.speedbridgemc.entityevents.impl.event;
+
+import io.github.speedbridgemc.entityevents.api.EntityBatch;
+import io.github.speedbridgemc.entityevents.api.EntityBatchTickEvents;
+import io.github.speedbridgemc.entityevents.api.ListenerHandle;
+import io.github.speedbridgemc.entityevents.impl.EntityHooks;
+import io.github.speedbridgemc.entityevents.impl.ServerWorldHooks;
+import io.github.speedbridgemc.entityevents.impl.WorldStorage;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ReferenceMap;
+import it.unimi.dsi.fastutil.objects.Reference2ReferenceOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.world.EntityList;
+import java.util.Arrays;
+
+import static io.github.speedbridgemc.entityevents.impl.ServerWorldHooks.getOrCreateWorldStorage;
+
+public final class BatchTickInternals {
+    public BatchTickInternals() { }
+
+    private static final class Events<E extends Entity> extends EventRegistry.Events<Events<E>> implements EntityBatchTickEvents<E> {
+        @SuppressWarnings("unchecked")
+        public final ListenerList<Before<E>> befores = newList(Before[]::new);
+        @SuppressWarnings("unchecked")
+        public final ListenerList<After<E>> afters = newList(After[]::new);
+
+        public Events(@NotNull EventRegistry<?, ?, ?> registry, @NotNull Reference2ReferenceMap<?, ?> map, @NotNull Object key) {
+            super(registry, map, key);
+        }
+
+        @Override
+        public @NotNull EntityBatchTickEvents<E> registerBefore(@NotNull Before<E> callback) {
+            listenBefore(callback);
+            return this;
+        }
+
+        @Override
+        public @NotNull EntityBatchTickEvents<E> registerAfter(@NotNull After<E> callback) {
+            listenAfter(callback);
+            return this;
+        }
+
+        @Override
+        public @NotNull ListenerHandle listenBefore(@NotNull Before<E> callback, int priority) {
+            synchronized (EVENTS.lock) {
+                return getLive().befores.add(callback, priority);
+            }
+        }
+
+        @Override
+        public @NotNull ListenerHandle listenAfter(@NotNull After<E> callback, int priority) {
+            synchronized (EVENTS.lock) {
+                return getLive().afters.add(callback, priority);
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return befores.isEmpty() && afters.isEmpty();
+        }
+    }
+
+    // an immutable copy of an Events object's listeners, safe to read from any thread
+    private static final class Listeners {
+        public final EntityBatchTickEvents.Before<Entity>[] befores;
+        public final EntityBatchTickEvents.After<Entity>[] afters;
+
+        public Listeners(@NotNull Events<Entity> events) {
+            // the arrays are replaced, never modified, so sharing them is fine
+            befores = events.befores.getArray();
+            afters = events.afters.getArray();
+        }
+    }
+
+    // batch events are only keyed by class and type, and nothing runs them through generated invokers
+    private static final EventRegistry<Events<Entity>, Listeners, Void> EVENTS = new EventRegistry<>(Events::new,
+            Listeners::new, Listeners[]::new, listeners -> false, key -> onListenersChanged());
+
+    // true while any listener is registered - the world tick checks this before collecting any batches
+    public static volatile boolean active;
+
+    private static final class Registry extends EventRegistry.Snapshot<Listeners, Void> {
+        // must hold EVENTS.lock
+        public Registry() {
+            super(EVENTS);
+        }
+
+        // class listeners first, then type listeners, same as per-entity tick events
+        public @NotNull Listeners[] createPlan(@NotNull EntityType<?> type, @NotNull Class<?> entityClass) {
+            Listeners[] classPlan = classPlans.get(entityClass).classListeners;
+            Listeners typeListeners = this.typeListeners.get(type);
+            if (typeListeners == null)
+                return classPlan;
+            Listeners[] plan = Arrays.copyOf(classPlan, classPlan.length + 1);
+            plan[classPlan.length] = typeListeners;
+            return plan;
+        }
+    }
+
+    private static volatile Registry registry = new Registry();
+
+    // must hold EVENTS.lock
+    private static void onListenersChanged() {
+        Registry newRegistry = new Registry();
+        registry = newRegistry;
+        active = newRegistry.hasListeners();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E extends Entity> @NotNull EntityBatchTickEvents<E> ofClass(@NotNull Class<E> clazz) {
+        return (EntityBatchTickEvents<E>) (EntityBatchTickEvents<?>) EVENTS.getClassEvents(clazz);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E extends Entity> @NotNull EntityBatchTickEvents<E> of(@NotNull EntityType<E> type) {
+        return (EntityBatchTickEvents<E>) (EntityBatchTickEvents<?>) EVENTS.getTypeEvents(type);
+    }
+
+    // entities of one type and class that are about to tick
+    // reused every tick, so collecting batches doesn't allocate once a world has seen all of its entity types
+    private static final class Group implements EntityBatch<Entity> {
+        public final EntityType<?> type;
+        public final Class<? extends Entity> entityClass;
+        // another group with the same type, but a different class
+        public final @Nullable Group next;
+        private Entity[] entities = new Entity[64];
+        // one bit per entity
+        private long[] cancelled = new long[1];
+        private int size;
+        private boolean cancellable;
+        // the listeners that apply to this group, and the registry they came from
+        private @Nullable Registry planRegistry;
+        private Listeners[] plan;
+
+        public Group(@NotNull EntityType<?> type, @NotNull Class<? extends Entity> entityClass, @Nullable Group next) {
+            this.type = type;
+            this.entityClass = entityClass;
+            this.next = next;
+        }
+
+        public @NotNull Listeners[] getPlan(@NotNull Registry registry) {
+            if (planRegistry != registry) {
+                plan = registry.createPlan(type, entityClass);
+                planRegistry = registry;
+            }
+            return plan;
+        }
+
+        public void add(@NotNull Entity entity) {
+            if (size == entities.length) {
+                entities = Arrays.copyOf(entities, size * 2);
+                cancelled = Arrays.copyOf(cancelled, entities.length >>> 6);
+            }
+            entities[size++] = entity;
+        }
+
+        public void applyCancellations(@NotNull ServerWorld world, long stamp) {
+            for (int word = 0; word < cancelled.length; word++) {
+                long bits = cancelled[word];
+                while (bits != 0) {
+                    int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    // picked up by TickInternals.invoke, which ServerWorld.tickEntity runs for each of these
+                    ((EntityHooks) entities[index]).entityevents$setTickResult(world, stamp, true);
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        public void clear() {
+            // don't keep entities alive until the next tick
+            Arrays.fill(entities, 0, size, null);
+            Arrays.fill(cancelled, 0L);
+            size = 0;
+        }
+
+        @Override
+        public @NotNull EntityType<?> getType() {
+            return type;
+        }
+
+        @Override
+        public @NotNull Class<? extends Entity> getEntityClass() {
+            return entityClass;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public @NotNull Entity get(int index) {
+            checkIndex(index);
+            return entities[index];
+        }
+
+        @Override
+        public boolean isCancelled(int index) {
+            checkIndex(index);
+            return (cancelled[index >>> 6] & (1L << index)) != 0;
+        }
+
+        @Override
+        public void cancel(int index) {
+            checkIndex(index);
+            if (!cancellable)
+                throw new IllegalStateException("Entities can only be cancelled before they tick");
+            cancelled[index >>> 6] |= 1L << index;
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for batch of size " + size);
+        }
+    }
+
+    private final Reference2ReferenceOpenHashMap<EntityType<?>, Group> groups = new Reference2ReferenceOpenHashMap<>();
+    // groups that have entities this tick, in the order their first entity was seen
+    private final ObjectArrayList<Group> tickGroups = new ObjectArrayList<>();
+    // the registry used for this tick, so that both phases see the same listeners
+    private @Nullable Registry tickRegistry;
+
+    // called right before ServerWorld.tick ticks its entities
+    public static void beforeEntitiesTick(@NotNull ServerWorld world, @NotNull EntityList entityList) {
+        Registry registry = BatchTickInternals.registry;
+        if (!registry.hasListeners())
+            return;
+        getOrCreateWorldStorage(world).getBatchTickInternals().beforeEntitiesTick0(world, entityList, registry);
+    }
+
+    // called right after ServerWorld.tick ticks its entities
+    public static void afterEntitiesTick(@NotNull ServerWorld world) {
+        WorldStorage storage = ((ServerWorldHooks) world).entityevents$getWorldStorage();
+        if (storage != null)
+            storage.getBatchTickInternals().afterEntitiesTick0(world);
+    }
+
+    private void beforeEntitiesTick0(@NotNull ServerWorld world, @NotNull EntityList entityList, @NotNull Registry registry) {
+        tickRegistry = registry;
+        entityList.forEach(this::collect);
+        long stamp = world.getTime();
+        for (Group group : tickGroups) {
+            group.cancellable = true;
+            try {
+                for (Listeners listeners : group.plan) {
+                    for (EntityBatchTickEvents.Before<Entity> before : listeners.befores)
+                        before.beforeEntitiesTick(world, group);
+                }
+            } finally {
+                group.cancellable = false;
+            }
+            group.applyCancellations(world, stamp);
+        }
+    }
+
+    private void collect(@NotNull Entity entity) {
+        // the checks ServerWorld.tick makes before ticking an entity that don't have side effects - passengers are
+        // ticked by their vehicles instead, and the entity list only holds entities in chunks that tick entities
+        // the rest (cancelled spawns, despawning) can only be known once the world gets to the entity,
+        // see EntityBatchTickEvents
+        if (entity.isRemoved() || entity.hasVehicle())
+            return;
+        EntityType<?> type = entity.getType();
+        Class<? extends Entity> entityClass = entity.getClass();
+        Group group = groups.get(type);
+        while (group != null && group.entityClass != entityClass)
+            group = group.next;
+        if (group == null) {
+            group = new Group(type, entityClass, groups.get(type));
+            groups.put(type, group);
+        }
+        assert tickRegistry != null;
+        // don't bother collecting entities no listener cares about
+        if (group.getPlan(tickRegistry).length == 0)
+            return;
+        if (group.size == 0)
+            tickGroups.add(group);
+        group.add(entity);
+    }
+
+    private void afterEntitiesTick0(@NotNull ServerWorld world) {
+        if (tickRegistry == null)
+            return;
+        try {
+            for (Group group : tickGroups) {
+                for (Listeners listeners : group.plan) {
+                    for (EntityBatchTickEvents.After<Entity> after : listeners.afters)
+                        after.afterEntitiesTick(world, group);
+                }
+            }
+        } finally {
+            for (Group group : tickGroups)
+                group.clear();
+            tickGroups.clear();
+            tickRegistry = null;
+        }
+    }
+}
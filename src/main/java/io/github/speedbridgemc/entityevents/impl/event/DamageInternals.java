@@ -1,172 +1,616 @@
 package io.github.speedbridgemc.entityevents.impl.event;
 
+import io.github.speedbridgemc.entityevents.api.DamageSnapshot;
 import io.github.speedbridgemc.entityevents.api.EntityDamageEvents;
+import io.github.speedbridgemc.entityevents.api.ListenerHandle;
+import io.github.speedbridgemc.entityevents.impl.EntityHooks;
+import io.github.speedbridgemc.entityevents.impl.Flags;
+import io.github.speedbridgemc.entityevents.impl.ServerWorldHooks;
 import io.github.speedbridgemc.entityevents.impl.WorldStorage;
-import it.unimi.dsi.fastutil.objects.Reference2BooleanOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceMap;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceOpenHashMap;
-import net.fabricmc.fabric.api.event.Event;
-import net.fabricmc.fabric.api.event.EventFactory;
 import net.fabricmc.fabric.api.util.TriState;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.damage.DamageSource;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.tag.Tag;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.Arrays;
 import java.util.function.Predicate;
 
 import static io.github.speedbridgemc.entityevents.impl.ServerWorldHooks.getOrCreateWorldStorage;
-import static io.github.speedbridgemc.entityevents.impl.ServerWorldHooks.getWorldStorage;
 
 public final class DamageInternals {
     public DamageInternals() { }
 
-    private static final class Events<E extends Entity> implements EntityDamageEvents<E> {
-        public final Event<Before<E>> beforeEvent;
-        public final Event<After<E>> afterEvent;
-        public final Event<Cancelled<E>> cancelledEvent;
-
-        public Events() {
-            beforeEvent = EventFactory.createArrayBacked(Before.class, befores -> (entity, source, amount) -> {
-                TriState ret = TriState.DEFAULT;
-                for (Before<E> before : befores) {
-                    ret = before.beforeDamaged(entity, source, amount);
-                    if (ret != TriState.DEFAULT)
-                        break;
-                }
-                return ret;
-            });
-            afterEvent = EventFactory.createArrayBacked(After.class, afters -> (entity, source, amount) -> {
-                for (After<E> after : afters)
-                    after.afterDamaged(entity, source, amount);
-            });
-            cancelledEvent = EventFactory.createArrayBacked(Cancelled.class, cancelleds -> (entity, source, amount) -> {
-                for (Cancelled<E> cancelled : cancelleds)
-                    cancelled.damageCancelled(entity, source, amount);
-            });
+    // regions of this world, only touched while holding EVENTS.lock, see EventRegistry.getRegionEvents
+    private final Reference2ReferenceOpenHashMap<Region, Events<Entity>> regionEvents = new Reference2ReferenceOpenHashMap<>();
+    // region listeners in this world, only replaced while holding EVENTS.lock
+    private volatile RegionIndex<Listeners> regionIndex = RegionIndex.empty();
+
+    private static final class Events<E extends Entity> extends EventRegistry.Events<Events<E>> implements EntityDamageEvents<E> {
+        @SuppressWarnings("unchecked")
+        public final ListenerList<Before<E>> befores = newList(Before[]::new);
+        @SuppressWarnings("unchecked")
+        public final ListenerList<After<E>> afters = newList(After[]::new);
+        @SuppressWarnings("unchecked")
+        public final ListenerList<Cancelled<E>> cancelleds = newList(Cancelled[]::new);
+        @SuppressWarnings("unchecked")
+        public final ListenerList<After<E>> deferredAfters = newList(After[]::new);
+        @SuppressWarnings("unchecked")
+        public final ListenerList<Cancelled<E>> deferredCancelleds = newList(Cancelled[]::new);
+        public final ListenerList<Async> asyncs = newList(Async[]::new);
+
+        public Events(@NotNull EventRegistry<?, ?, ?> registry, @NotNull Reference2ReferenceMap<?, ?> map, @NotNull Object key) {
+            super(registry, map, key);
         }
 
         @Override
         public @NotNull EntityDamageEvents<E> registerBefore(@NotNull Before<E> callback) {
-            beforeEvent.register(callback);
+            listenBefore(callback);
             return this;
         }
 
         @Override
         public @NotNull EntityDamageEvents<E> registerAfter(@NotNull After<E> callback) {
-            afterEvent.register(callback);
+            listenAfter(callback);
             return this;
         }
 
         @Override
         public @NotNull EntityDamageEvents<E> registerCancelled(@NotNull Cancelled<E> callback) {
-            cancelledEvent.register(callback);
+            listenCancelled(callback);
             return this;
         }
+
+        @Override
+        public @NotNull ListenerHandle listenBefore(@NotNull Before<E> callback, int priority) {
+            synchronized (EVENTS.lock) {
+                return getLive().befores.add(callback, priority);
+            }
+        }
+
+        @Override
+        public @NotNull ListenerHandle listenAfter(@NotNull After<E> callback, int priority) {
+            synchronized (EVENTS.lock) {
+                return getLive().afters.add(callback, priority);
+            }
+        }
+
+        @Override
+        public @NotNull ListenerHandle listenCancelled(@NotNull Cancelled<E> callback, int priority) {
+            synchronized (EVENTS.lock) {
+                return getLive().cancelleds.add(callback, priority);
+            }
+        }
+
+        @Override
+        public @NotNull ListenerHandle listenAfterDeferred(@NotNull After<E> callback, int priority) {
+            synchronized (EVENTS.lock) {
+                return getLive().deferredAfters.add(callback, priority);
+            }
+        }
+
+        @Override
+        public @NotNull ListenerHandle listenCancelledDeferred(@NotNull Cancelled<E> callback, int priority) {
+            synchronized (EVENTS.lock) {
+                return getLive().deferredCancelleds.add(callback, priority);
+            }
+        }
+
+        @Override
+        public @NotNull ListenerHandle listenAsync(@NotNull Async callback) {
+            synchronized (EVENTS.lock) {
+                return getLive().asyncs.add(callback, ListenerHandle.DEFAULT_PRIORITY);
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return befores.isEmpty() && afters.isEmpty() && cancelleds.isEmpty()
+                    && deferredAfters.isEmpty() && deferredCancelleds.isEmpty() && asyncs.isEmpty();
+        }
     }
 
-    private static final Reference2ReferenceOpenHashMap<Class<?>, Events<Entity>> CLASS_EVENTS
-            = new Reference2ReferenceOpenHashMap<>();
-    private static final Reference2ReferenceOpenHashMap<EntityType<?>, Events<Entity>> TYPE_EVENTS
-            = new Reference2ReferenceOpenHashMap<>();
-    private static final Reference2ReferenceOpenHashMap<Predicate<Entity>, Events<Entity>> PREDICATE_EVENTS
-            = new Reference2ReferenceOpenHashMap<>();
+    // an immutable copy of an Events object's listeners, safe to read from any thread
+    private static final class Listeners {
+        public final EntityDamageEvents.Before<Entity>[] befores;
+        public final EntityDamageEvents.After<Entity>[] afters;
+        public final EntityDamageEvents.Cancelled<Entity>[] cancelleds;
+        // only run at the end of the world tick, see DeferredQueue
+        public final EntityDamageEvents.After<Entity>[] deferredAfters;
+        public final EntityDamageEvents.Cancelled<Entity>[] deferredCancelleds;
+        // run off-thread with a snapshot, see AsyncDispatcher
+        public final EntityDamageEvents.Async[] asyncs;
+
+        public Listeners(@NotNull Events<Entity> events) {
+            // the arrays are replaced, never modified, so sharing them is fine
+            befores = events.befores.getArray();
+            afters = events.afters.getArray();
+            cancelleds = events.cancelleds.getArray();
+            deferredAfters = events.deferredAfters.getArray();
+            deferredCancelleds = events.deferredCancelleds.getArray();
+            asyncs = events.asyncs.getArray();
+        }
+
+        public boolean requiresInterpreter() {
+            return deferredAfters.length != 0 || deferredCancelleds.length != 0 || asyncs.length != 0;
+        }
+    }
+
+    // implemented by classes generated by InvokerGenerator
+    public interface Invoker {
+        boolean invoke(@NotNull Entity entity, @NotNull DamageSource source, float amount);
+    }
+
+    private static final @Nullable InvokerGenerator.Shape INVOKER_SHAPE = Flags.GENERATE_INVOKERS
+            ? new InvokerGenerator.Shape("DamageInvoker", Invoker.class,
+            EntityDamageEvents.Before.class, EntityDamageEvents.After.class, EntityDamageEvents.Cancelled.class)
+            : null;
+
+    private static final EventRegistry<Events<Entity>, Listeners, Invoker> EVENTS = new EventRegistry<>(Events::new,
+            Listeners::new, Listeners[]::new, Listeners::requiresInterpreter, DamageInternals::onChanged);
+
+    // true while any listener is registered - the hooks check this before calling invoke at all
+    // (damage hooks only check this in classes too old for invokedynamic, see bootstrapHook)
+    public static volatile boolean active;
+
+    private static final class Registry extends EventRegistry.Snapshot<Listeners, Invoker> {
+        // must hold EVENTS.lock
+        public Registry() {
+            super(EVENTS);
+        }
+    }
+
+    private static volatile Registry registry = new Registry();
+
+    public static void onTagsReloaded() {
+        synchronized (EVENTS.lock) {
+            registry = new Registry();
+        }
+    }
+
+    // must hold EVENTS.lock
+    private static void onChanged(@NotNull Object key) {
+        // regions aren't part of the Registry, only of their world's RegionIndex
+        if (key instanceof Region)
+            onRegionsChanged(((Region) key).getStorage().getDamageInternals());
+        else
+            onListenersChanged();
+    }
+
+    // must hold EVENTS.lock
+    private static void onListenersChanged() {
+        Registry newRegistry = new Registry();
+        registry = newRegistry;
+        active = newRegistry.hasListeners() || EVENTS.anyRegions;
+        relinkHooks();
+    }
+
+    // must hold EVENTS.lock
+    private static void onRegionsChanged(@NotNull DamageInternals internals) {
+        boolean hadRegions = !internals.regionIndex.isEmpty();
+        internals.regionIndex = EVENTS.freezeRegions(internals.regionEvents);
+        if (EVENTS.updateRegionWorlds(hadRegions, !internals.regionIndex.isEmpty())) {
+            active = registry.hasListeners() || EVENTS.anyRegions;
+            relinkHooks();
+        }
+    }
+
+    // forgets the world's regions, so it doesn't count towards anyRegions anymore
+    public static void onWorldUnloaded(@NotNull ServerWorld world) {
+        WorldStorage storage = ((ServerWorldHooks) world).entityevents$getWorldStorage();
+        if (storage == null)
+            return;
+        synchronized (EVENTS.lock) {
+            DamageInternals internals = storage.getDamageInternals();
+            internals.regionEvents.clear();
+            onRegionsChanged(internals);
+        }
+    }
+
+    // names of the invokedynamic hooks injected into damage methods, see EventCallbackInjector
+    public static final String HOOK_ENTER = "enterDamage", HOOK_DAMAGE = "damage";
+
+    // call sites of the invokedynamic hooks injected into damage methods, see bootstrapHook
+    private static final class HookSite {
+        public final Class<?> owner;
+        public final MethodHandle linkedTarget;
+        public final MethodHandle unlinkedTarget;
+        public final MutableCallSite callSite;
+        public boolean linked;
+
+        public HookSite(@NotNull Class<?> owner, @NotNull MethodType type, @NotNull MethodHandle target, @NotNull Object unlinkedResult) {
+            this.owner = owner;
+            linkedTarget = target.asType(type);
+            MethodHandle constant = MethodHandles.constant(type.returnType(), unlinkedResult);
+            unlinkedTarget = MethodHandles.dropArguments(constant, 0, type.parameterList());
+            callSite = new MutableCallSite(unlinkedTarget);
+        }
+    }
+
+    private static final MethodHandle ENTER_HANDLE, INVOKE_HANDLE;
+    private static final ObjectArrayList<HookSite> HOOK_SITES = new ObjectArrayList<>();
+
+    static {
+        try {
+            ENTER_HANDLE = MethodHandles.lookup().findStatic(DamageInternals.class, "enterDamage",
+                    MethodType.methodType(int.class, Entity.class));
+            INVOKE_HANDLE = MethodHandles.lookup().findStatic(DamageInternals.class, "invoke",
+                    MethodType.methodType(boolean.class, Entity.class, DamageSource.class, float.class));
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to find DamageInternals hook targets", e);
+        }
+    }
 
+    @SuppressWarnings("unused") // bootstrap method of the invokedynamic hooks injected by EventCallbackInjector
+    public static @NotNull CallSite bootstrapHook(@NotNull MethodHandles.Lookup lookup, @NotNull String name, @NotNull MethodType type) {
+        HookSite site;
+        switch (name) {
+        case HOOK_ENTER:
+            // unlinked enter hooks don't track depth at all, see EventCallbackInjector.injectDamageHook
+            site = new HookSite(lookup.lookupClass(), type, ENTER_HANDLE, DAMAGE_UNTRACKED);
+            break;
+        case HOOK_DAMAGE:
+            site = new HookSite(lookup.lookupClass(), type, INVOKE_HANDLE, false);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown damage hook " + name);
+        }
+        synchronized (HOOK_SITES) {
+            HOOK_SITES.add(site);
+            if (isHookRelevant(site.owner)) {
+                site.callSite.setTarget(site.linkedTarget);
+                site.linked = true;
+            }
+        }
+        return site.callSite;
+    }
+
+    // whether any listener could apply to an entity whose damage method is declared by owner
+    private static boolean isHookRelevant(@NotNull Class<?> owner) {
+        Registry registry = DamageInternals.registry;
+        // there's no way to tell which classes these apply to before the entities actually exist
+        if (registry.anyUnbound || EVENTS.anyRegions)
+            return true;
+        for (Class<?> clazz : registry.classListeners.keySet()) {
+            // owner's damage method also runs for subclasses that don't override it
+            if (clazz.isAssignableFrom(owner) || owner.isAssignableFrom(clazz))
+                return true;
+        }
+        return false;
+    }
+
+    private static void relinkHooks() {
+        synchronized (HOOK_SITES) {
+            ObjectArrayList<MutableCallSite> relinked = new ObjectArrayList<>();
+            for (HookSite site : HOOK_SITES) {
+                boolean relevant = isHookRelevant(site.owner);
+                if (site.linked == relevant)
+                    continue;
+                // unlink hooks whose listeners were all unregistered, so they go back to costing nothing
+                site.callSite.setTarget(relevant ? site.linkedTarget : site.unlinkedTarget);
+                site.linked = relevant;
+                relinked.add(site.callSite);
+            }
+            if (!relinked.isEmpty())
+                MutableCallSite.syncAll(relinked.toArray(new MutableCallSite[0]));
+        }
+    }
+
+    // payloads of deferred After and Cancelled listeners, stored column by column so queueing doesn't allocate
+    // one per thread, since worlds may be ticked in parallel - each world's thread flushes it at the end of the world tick
+    private static final class DeferredQueue {
+        private Entity[] entities = new Entity[16];
+        private DamageSource[] sources = new DamageSource[16];
+        private float[] amounts = new float[16];
+        private Listeners[] listeners = new Listeners[16];
+        private boolean[] cancelled = new boolean[16];
+        private int size;
+
+        public void add(@NotNull Entity entity, @NotNull DamageSource source, float amount, @NotNull Listeners listeners,
+                        boolean cancelled) {
+            if (size == entities.length) {
+                int newLength = size * 2;
+                entities = Arrays.copyOf(entities, newLength);
+                sources = Arrays.copyOf(sources, newLength);
+                amounts = Arrays.copyOf(amounts, newLength);
+                this.listeners = Arrays.copyOf(this.listeners, newLength);
+                this.cancelled = Arrays.copyOf(this.cancelled, newLength);
+            }
+            entities[size] = entity;
+            sources[size] = source;
+            amounts[size] = amount;
+            this.listeners[size] = listeners;
+            this.cancelled[size] = cancelled;
+            size++;
+        }
+
+        public void flush() {
+            try {
+                // listeners might queue more events while this runs, those are flushed here too
+                for (int i = 0; i < size; i++) {
+                    if (cancelled[i]) {
+                        for (EntityDamageEvents.Cancelled<Entity> cancelledCallback : listeners[i].deferredCancelleds)
+                            cancelledCallback.damageCancelled(entities[i], sources[i], amounts[i]);
+                    } else {
+                        for (EntityDamageEvents.After<Entity> after : listeners[i].deferredAfters)
+                            after.afterDamaged(entities[i], sources[i], amounts[i]);
+                    }
+                }
+            } finally {
+                // don't keep entities alive until the next flush
+                Arrays.fill(entities, 0, size, null);
+                Arrays.fill(sources, 0, size, null);
+                Arrays.fill(listeners, 0, size, null);
+                size = 0;
+            }
+        }
+    }
+
+    private static final ThreadLocal<DeferredQueue> DEFERRED = ThreadLocal.withInitial(DeferredQueue::new);
+
+    // called at the end of every world tick
+    public static void flushDeferred() {
+        DEFERRED.get().flush();
+    }
+
+    @SuppressWarnings("unchecked")
     public static <E extends Entity> @NotNull EntityDamageEvents<E> ofClass(@NotNull Class<E> clazz) {
-        //noinspection unchecked
-        return (EntityDamageEvents<E>) CLASS_EVENTS.computeIfAbsent(clazz, aClass -> new Events<>());
+        return (EntityDamageEvents<E>) (EntityDamageEvents<?>) EVENTS.getClassEvents(clazz);
     }
 
+    @SuppressWarnings("unchecked")
     public static <E extends Entity> @NotNull EntityDamageEvents<E> of(@NotNull EntityType<E> type) {
-        //noinspection unchecked
-        return (EntityDamageEvents<E>) TYPE_EVENTS.computeIfAbsent(type, entityType -> new Events<>());
+        return (EntityDamageEvents<E>) (EntityDamageEvents<?>) EVENTS.getTypeEvents(type);
+    }
+
+    public static @NotNull EntityDamageEvents<Entity> inTag(@NotNull Tag<EntityType<?>> tag) {
+        return EVENTS.getTagEvents(tag);
     }
 
     public static @NotNull EntityDamageEvents<Entity> matching(@NotNull Predicate<Entity> predicate) {
-        return PREDICATE_EVENTS.computeIfAbsent(predicate, predicate1 -> new Events<>());
+        return EVENTS.getPredicateEvents(predicate);
     }
 
-    private final Reference2BooleanOpenHashMap<Entity> invokedThisTick
-            = new Reference2BooleanOpenHashMap<>();
+    public static @NotNull EntityDamageEvents<Entity> inRegion(@NotNull Region region) {
+        return EVENTS.getRegionEvents(region.getStorage().getDamageInternals().regionEvents, region);
+    }
+
+    // what the enter hook returns - the injected code keeps it in a local, and only exits if it entered
+    public static final int DAMAGE_UNTRACKED = 0, DAMAGE_OUTERMOST = 1, DAMAGE_NESTED = 2;
+
+    // called by the injected hooks around damage methods, so that super.damage calls don't fire events again
+    // only linked while a listener might apply, see bootstrapHook
+    @SuppressWarnings("unused")
+    public static int enterDamage(@NotNull Entity entity) {
+        return ((EntityHooks) entity).entityevents$enterDamage() == 0 ? DAMAGE_OUTERMOST : DAMAGE_NESTED;
+    }
+
+    @SuppressWarnings("unused")
+    public static void exitDamage(@NotNull Entity entity) {
+        ((EntityHooks) entity).entityevents$exitDamage();
+    }
 
     @SuppressWarnings("unused")
     public static boolean invoke(@NotNull Entity entity, @NotNull DamageSource source, float amount) {
         if (entity.getEntityWorld().isClient())
             return false;
-        return getOrCreateWorldStorage((ServerWorld) entity.getEntityWorld()).getOrCreateDamageInternals().invoke0(entity, source, amount);
-    }
-
-    private boolean invoke0(@NotNull Entity entity, @NotNull DamageSource source, float amount) {
-        if (invokedThisTick.containsKey(entity))
-            return invokedThisTick.getBoolean(entity);
-        boolean cancelled = invokeBeforeClass(entity, source, amount, entity.getClass());
-        if (!cancelled) {
-            Events<Entity> typeEvents = TYPE_EVENTS.get(entity.getType());
-            if (typeEvents != null)
-                cancelled = invokeBefore(typeEvents, entity, source, amount);
-        }
-        if (!cancelled) {
-            for (Reference2ReferenceMap.Entry<Predicate<Entity>, Events<Entity>> entry : PREDICATE_EVENTS.reference2ReferenceEntrySet()) {
-                if (entry.getKey().test(entity)) {
-                    cancelled = invokeBefore(entry.getValue(), entity, source, amount);
-                    if (cancelled)
-                        break;
+        // read the registry exactly once, so the whole dispatch sees the same listeners
+        Registry registry = DamageInternals.registry;
+        EventRegistry.ClassPlan<Listeners, Invoker> plan = registry.classPlans.get(entity.getClass());
+        if (plan.idle && !EVENTS.anyRegions)
+            return false;
+        DamageInternals internals = getOrCreateWorldStorage((ServerWorld) entity.getEntityWorld()).getDamageInternals();
+        // a region only affects entities in its own world
+        if (plan.idle && internals.regionIndex.isEmpty())
+            return false;
+        return internals.invoke0(entity, source, amount, registry, plan);
+    }
+
+    private boolean invoke0(@NotNull Entity entity, @NotNull DamageSource source, float amount,
+                            @NotNull Registry registry, @NotNull EventRegistry.ClassPlan<Listeners, Invoker> plan) {
+        // no deduplication needed here, since the injected hooks only call invoke for the outermost damage method
+        // generated invokers don't know about this world's region listeners
+        if (INVOKER_SHAPE != null && !registry.anyRequiresInterpreter && regionIndex.isEmpty())
+            return invokeGenerated(entity, source, amount, registry, plan);
+        return invokeInterpreted(entity, source, amount, registry, plan);
+    }
+
+    private boolean invokeGenerated(@NotNull Entity entity, @NotNull DamageSource source, float amount,
+                                    @NotNull Registry registry, @NotNull EventRegistry.ClassPlan<Listeners, Invoker> plan) {
+        Reference2ReferenceOpenHashMap<EntityType<?>, Listeners[]> typePlans = registry.getTypePlans();
+        EventRegistry.GeneratedInvoker<Listeners, Invoker> generated = plan.generated;
+        if (generated == null || generated.typePlans != typePlans) {
+            // several worlds can reach this at once - only let one of them generate a class
+            synchronized (plan) {
+                generated = plan.generated;
+                if (generated == null || generated.typePlans != typePlans) {
+                    assert INVOKER_SHAPE != null;
+                    Invoker invoker = InvokerGenerator.generate(INVOKER_SHAPE, entity.getClass(),
+                            createInvokerGroups(plan, typePlans.get(entity.getType()), registry.predicatePlan));
+                    plan.generated = generated = new EventRegistry.GeneratedInvoker<>(entity.getType(), typePlans, invoker);
                 }
             }
         }
-        invokeAfter(entity, source, amount, cancelled);
-        invokedThisTick.put(entity, cancelled);
-        return cancelled;
+        // only generate one invoker per class - if the class is shared by several types, the others are interpreted
+        if (generated.invoker == null || generated.type != entity.getType())
+            return invokeInterpreted(entity, source, amount, registry, plan);
+        return generated.invoker.invoke(entity, source, amount);
     }
 
-    private boolean invokeBefore(@NotNull Events<Entity> events, @NotNull Entity entity, @NotNull DamageSource source, float amount) {
-        return events.beforeEvent.invoker().beforeDamaged(entity, source, amount).orElse(false);
+    private static @NotNull InvokerGenerator.Group[] createInvokerGroups(@NotNull EventRegistry.ClassPlan<Listeners, Invoker> plan,
+                                                                         @Nullable Listeners[] typePlan,
+                                                                         @NotNull EventRegistry.PredicatePlan<Listeners> predicatePlan) {
+        ObjectArrayList<InvokerGenerator.Group> groups = new ObjectArrayList<>();
+        for (Listeners classListeners : plan.classListeners)
+            groups.add(new InvokerGenerator.Group(null, classListeners.befores, classListeners.afters, classListeners.cancelleds));
+        if (typePlan != null) {
+            for (Listeners typeListeners : typePlan)
+                groups.add(new InvokerGenerator.Group(null, typeListeners.befores, typeListeners.afters, typeListeners.cancelleds));
+        }
+        for (int i = 0; i < predicatePlan.predicates.length; i++) {
+            Listeners listeners = predicatePlan.listeners[i];
+            groups.add(new InvokerGenerator.Group(predicatePlan.predicates[i], listeners.befores, listeners.afters, listeners.cancelleds));
+        }
+        return groups.toArray(new InvokerGenerator.Group[0]);
     }
 
-    private boolean invokeBeforeClass(@NotNull Entity entity, @NotNull DamageSource source, float amount, @NotNull Class<?> clazz) {
-        if (EventUtils.isSuperclassValid(clazz)) {
-            if (!invokeBeforeClass(entity, source, amount, clazz.getSuperclass()))
-                return false;
+    private boolean invokeInterpreted(@NotNull Entity entity, @NotNull DamageSource source, float amount,
+                                      @NotNull Registry registry, @NotNull EventRegistry.ClassPlan<Listeners, Invoker> plan) {
+        boolean cancelled = false;
+        for (Listeners classListeners : plan.classListeners) {
+            if (invokeBefore(classListeners, entity, source, amount)) {
+                cancelled = true;
+                break;
+            }
         }
-        Events<Entity> classEvents = CLASS_EVENTS.get(clazz);
-        if (classEvents == null)
-            return false;
-        return invokeBefore(classEvents, entity, source, amount);
+        Listeners[] typePlan = registry.getTypePlans().get(entity.getType());
+        if (!cancelled && typePlan != null) {
+            for (Listeners typeListeners : typePlan) {
+                if (invokeBefore(typeListeners, entity, source, amount)) {
+                    cancelled = true;
+                    break;
+                }
+            }
+        }
+        // only the regions covering the entity's chunk section can possibly contain it
+        RegionIndex.Entry<Listeners>[] regions = regionIndex.get(Region.getSection(entity));
+        EventRegistry.PredicatePlan<Listeners> predicatePlan = registry.predicatePlan;
+        PredicateScratch predicateScratch = PredicateScratch.get();
+        // region results come first, then predicate results
+        int scratchBase = predicateScratch.push(regions.length + predicatePlan.predicates.length);
+        try {
+            if (!cancelled) {
+                for (int i = 0; i < regions.length; i++) {
+                    boolean matches = regions[i].region.contains(entity);
+                    predicateScratch.set(scratchBase + i, matches ? PredicateScratch.MATCHED : PredicateScratch.NOT_MATCHED);
+                    if (matches && invokeBefore(regions[i].listeners, entity, source, amount)) {
+                        cancelled = true;
+                        break;
+                    }
+                }
+            }
+            if (!cancelled) {
+                int predicateBase = scratchBase + regions.length;
+                for (int i = 0; i < predicatePlan.predicates.length; i++) {
+                    boolean matches = predicatePlan.predicates[i].test(entity);
+                    predicateScratch.set(predicateBase + i, matches ? PredicateScratch.MATCHED : PredicateScratch.NOT_MATCHED);
+                    if (matches && invokeBefore(predicatePlan.listeners[i], entity, source, amount)) {
+                        cancelled = true;
+                        break;
+                    }
+                }
+            }
+            invokeAfter(entity, source, amount, plan, typePlan, regions, predicatePlan, predicateScratch, scratchBase, cancelled);
+        } finally {
+            predicateScratch.pop(scratchBase);
+        }
+        return cancelled;
     }
 
-    private void invokeAfter(@NotNull Events<Entity> events, @NotNull Entity entity, @NotNull DamageSource source, float amount, boolean cancelled) {
-        if (cancelled)
-            events.cancelledEvent.invoker().damageCancelled(entity, source, amount);
-        else
-            events.afterEvent.invoker().afterDamaged(entity, source, amount);
+    private boolean invokeBefore(@NotNull Listeners listeners, @NotNull Entity entity, @NotNull DamageSource source, float amount) {
+        for (EntityDamageEvents.Before<Entity> before : listeners.befores) {
+            TriState ret = before.beforeDamaged(entity, source, amount);
+            if (ret != TriState.DEFAULT)
+                return ret.orElse(false);
+        }
+        return false;
     }
 
-    private void invokeAfterClass(@NotNull Entity entity, @NotNull DamageSource source, float amount, @NotNull Class<?> clazz, boolean cancelled) {
-        if (EventUtils.isSuperclassValid(clazz))
-            invokeAfterClass(entity, source, amount, clazz.getSuperclass(), cancelled);
-        Events<Entity> classEvents = CLASS_EVENTS.get(clazz);
-        if (classEvents == null)
-            return;
-        invokeAfter(classEvents, entity, source, amount, cancelled);
+    // returns how many async listeners the group has - they're submitted once for the whole event, see submitAsync
+    private int invokeAfter(@NotNull Listeners listeners, @NotNull Entity entity, @NotNull DamageSource source, float amount,
+                            boolean cancelled) {
+        if (cancelled) {
+            for (EntityDamageEvents.Cancelled<Entity> cancelledCallback : listeners.cancelleds)
+                cancelledCallback.damageCancelled(entity, source, amount);
+        } else {
+            for (EntityDamageEvents.After<Entity> after : listeners.afters)
+                after.afterDamaged(entity, source, amount);
+        }
+        if (cancelled ? listeners.deferredCancelleds.length != 0 : listeners.deferredAfters.length != 0)
+            DEFERRED.get().add(entity, source, amount, listeners, cancelled);
+        return listeners.asyncs.length;
     }
 
-    private void invokeAfter(@NotNull Entity entity, @NotNull DamageSource source, float amount, boolean cancelled) {
-        invokeAfterClass(entity, source, amount, entity.getClass(), cancelled);
-        Events<Entity> typeEvents = TYPE_EVENTS.get(entity.getType());
-        if (typeEvents != null)
-            invokeAfter(typeEvents, entity, source, amount, cancelled);
-        for (Reference2ReferenceMap.Entry<Predicate<Entity>, Events<Entity>> entry : PREDICATE_EVENTS.reference2ReferenceEntrySet()) {
-            if (entry.getKey().test(entity))
-                invokeAfter(entry.getValue(), entity, source, amount, cancelled);
+    private void invokeAfter(@NotNull Entity entity, @NotNull DamageSource source, float amount,
+                             @NotNull EventRegistry.ClassPlan<Listeners, Invoker> plan,
+                             @Nullable Listeners[] typePlan, @NotNull RegionIndex.Entry<Listeners>[] regions,
+                             @NotNull EventRegistry.PredicatePlan<Listeners> predicatePlan,
+                             @NotNull PredicateScratch predicateScratch, int scratchBase, boolean cancelled) {
+        int asyncCount = 0;
+        for (Listeners classListeners : plan.classListeners)
+            asyncCount += invokeAfter(classListeners, entity, source, amount, cancelled);
+        if (typePlan != null) {
+            for (Listeners typeListeners : typePlan)
+                asyncCount += invokeAfter(typeListeners, entity, source, amount, cancelled);
+        }
+        // only test regions and predicates that the before phase didn't get to
+        // the results are kept, so submitAsync sees the same groups
+        for (int i = 0; i < regions.length; i++) {
+            byte result = predicateScratch.get(scratchBase + i);
+            if (result == PredicateScratch.UNKNOWN) {
+                result = regions[i].region.contains(entity) ? PredicateScratch.MATCHED : PredicateScratch.NOT_MATCHED;
+                predicateScratch.set(scratchBase + i, result);
+            }
+            if (result == PredicateScratch.MATCHED)
+                asyncCount += invokeAfter(regions[i].listeners, entity, source, amount, cancelled);
+        }
+        int predicateBase = scratchBase + regions.length;
+        for (int i = 0; i < predicatePlan.predicates.length; i++) {
+            byte result = predicateScratch.get(predicateBase + i);
+            if (result == PredicateScratch.UNKNOWN) {
+                result = predicatePlan.predicates[i].test(entity) ? PredicateScratch.MATCHED : PredicateScratch.NOT_MATCHED;
+                predicateScratch.set(predicateBase + i, result);
+            }
+            if (result == PredicateScratch.MATCHED)
+                asyncCount += invokeAfter(predicatePlan.listeners[i], entity, source, amount, cancelled);
         }
+        if (asyncCount != 0)
+            submitAsync(entity, source, amount, plan, typePlan, regions, predicatePlan, predicateScratch, scratchBase,
+                    asyncCount, cancelled);
     }
 
-    public static void endTick(@NotNull ServerWorld world) {
-        getWorldStorage(world).flatMap(WorldStorage::getDamageInternals).ifPresent(DamageInternals::endTick0);
+    // one snapshot per event, however many groups have async listeners - the dispatcher hands it to each of them,
+    // so the queue and its metrics count damage events rather than listener groups
+    private static void submitAsync(@NotNull Entity entity, @NotNull DamageSource source, float amount,
+                                    @NotNull EventRegistry.ClassPlan<Listeners, Invoker> plan,
+                                    @Nullable Listeners[] typePlan, @NotNull RegionIndex.Entry<Listeners>[] regions,
+                                    @NotNull EventRegistry.PredicatePlan<Listeners> predicatePlan,
+                                    @NotNull PredicateScratch predicateScratch, int scratchBase, int asyncCount, boolean cancelled) {
+        EntityDamageEvents.Async[] asyncs = new EntityDamageEvents.Async[asyncCount];
+        int count = 0;
+        for (Listeners classListeners : plan.classListeners)
+            count = appendAsyncs(classListeners, asyncs, count);
+        if (typePlan != null) {
+            for (Listeners typeListeners : typePlan)
+                count = appendAsyncs(typeListeners, asyncs, count);
+        }
+        for (int i = 0; i < regions.length; i++) {
+            if (predicateScratch.get(scratchBase + i) == PredicateScratch.MATCHED)
+                count = appendAsyncs(regions[i].listeners, asyncs, count);
+        }
+        int predicateBase = scratchBase + regions.length;
+        for (int i = 0; i < predicatePlan.predicates.length; i++) {
+            if (predicateScratch.get(predicateBase + i) == PredicateScratch.MATCHED)
+                count = appendAsyncs(predicatePlan.listeners[i], asyncs, count);
+        }
+        assert count == asyncCount;
+        AsyncDispatcher.INSTANCE.submit(new DamageSnapshot(entity.getUuid(), entity.getType(), entity.getX(), entity.getY(), entity.getZ(),
+                source.getName(), amount, cancelled), asyncs);
     }
 
-    private void endTick0() {
-        invokedThisTick.clear();
+    private static int appendAsyncs(@NotNull Listeners listeners, @NotNull EntityDamageEvents.Async[] asyncs, int count) {
+        System.arraycopy(listeners.asyncs, 0, asyncs, count, listeners.asyncs.length);
+        return count + listeners.asyncs.length;
     }
 }
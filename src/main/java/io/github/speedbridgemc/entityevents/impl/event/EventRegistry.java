@@ -0,0 +1,291 @@
+package io.github.speedbridgemc.entityevents.impl.event;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ReferenceLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ReferenceMap;
+import it.unimi.dsi.fastutil.objects.Reference2ReferenceOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.tag.Tag;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+// the listeners of one kind of event, keyed by class, type, tag and predicate - TickInternals, DamageInternals and
+// BatchTickInternals each have one
+// G is the kind's Events class, L its immutable copy of one Events object's listeners and I its generated invoker
+final class EventRegistry<G extends EventRegistry.Events<G>, L, I> {
+    // creates the events of a key in map, see Events
+    interface EventsFactory<G extends Events<G>> {
+        @NotNull G create(@NotNull EventRegistry<G, ?, ?> registry, @NotNull Reference2ReferenceMap<?, G> map, @NotNull Object key);
+    }
+
+    // guards the listener maps and the listener lists of every Events object
+    public final Object lock = new Object();
+
+    private final EventsFactory<G> eventsFactory;
+    private final Function<G, L> freezer;
+    private final IntFunction<L[]> arrayFactory;
+    private final Predicate<L> requiresInterpreter;
+    // run while holding lock with the key of the events that changed
+    private final Consumer<Object> onChanged;
+
+    // only touched while holding lock - the dispatch path only ever sees frozen copies of these, see Snapshot
+    private final Reference2ReferenceOpenHashMap<Class<?>, G> classEvents = new Reference2ReferenceOpenHashMap<>();
+    private final Reference2ReferenceOpenHashMap<EntityType<?>, G> typeEvents = new Reference2ReferenceOpenHashMap<>();
+    private final Reference2ReferenceOpenHashMap<Tag<EntityType<?>>, G> tagEvents = new Reference2ReferenceOpenHashMap<>();
+    // linked, since predicates are tested in the order they were registered in
+    private final Reference2ReferenceLinkedOpenHashMap<Predicate<Entity>, G> predicateEvents
+            = new Reference2ReferenceLinkedOpenHashMap<>();
+
+    // how many worlds have region listeners, see updateRegionWorlds - only touched while holding lock
+    private int regionWorlds;
+    public volatile boolean anyRegions;
+
+    // requiresInterpreter tells whether a group has listeners generated invokers don't know about
+    public EventRegistry(@NotNull EventsFactory<G> eventsFactory, @NotNull Function<G, L> freezer,
+                         @NotNull IntFunction<L[]> arrayFactory, @NotNull Predicate<L> requiresInterpreter,
+                         @NotNull Consumer<Object> onChanged) {
+        this.eventsFactory = eventsFactory;
+        this.freezer = freezer;
+        this.arrayFactory = arrayFactory;
+        this.requiresInterpreter = requiresInterpreter;
+        this.onChanged = onChanged;
+    }
+
+    public @NotNull G getClassEvents(@NotNull Class<?> clazz) {
+        return getEvents(classEvents, clazz);
+    }
+
+    public @NotNull G getTypeEvents(@NotNull EntityType<?> type) {
+        return getEvents(typeEvents, type);
+    }
+
+    public @NotNull G getTagEvents(@NotNull Tag<EntityType<?>> tag) {
+        return getEvents(tagEvents, tag);
+    }
+
+    public @NotNull G getPredicateEvents(@NotNull Predicate<Entity> predicate) {
+        return getEvents(predicateEvents, predicate);
+    }
+
+    // regions are kept per world rather than in here, which would keep every world they were made in alive
+    public @NotNull G getRegionEvents(@NotNull Reference2ReferenceMap<Region, G> regionEvents, @NotNull Region region) {
+        return getEvents(regionEvents, region);
+    }
+
+    private <K> @NotNull G getEvents(@NotNull Reference2ReferenceMap<K, G> map, @NotNull K key) {
+        synchronized (lock) {
+            G events = map.get(key);
+            if (events == null)
+                map.put(key, events = eventsFactory.create(this, map, key));
+            return events;
+        }
+    }
+
+    // must hold lock
+    private <K> @NotNull Reference2ReferenceOpenHashMap<K, L> freeze(@NotNull Reference2ReferenceMap<K, G> map) {
+        Reference2ReferenceOpenHashMap<K, L> frozen = new Reference2ReferenceOpenHashMap<>();
+        for (Reference2ReferenceMap.Entry<K, G> entry : map.reference2ReferenceEntrySet()) {
+            if (!entry.getValue().isEmpty())
+                frozen.put(entry.getKey(), freezer.apply(entry.getValue()));
+        }
+        return frozen;
+    }
+
+    // must hold lock
+    @SuppressWarnings("unchecked")
+    private @NotNull PredicatePlan<L> freezePredicates() {
+        ObjectArrayList<Predicate<Entity>> predicates = new ObjectArrayList<>();
+        ObjectArrayList<L> listeners = new ObjectArrayList<>();
+        for (Reference2ReferenceMap.Entry<Predicate<Entity>, G> entry : predicateEvents.reference2ReferenceEntrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                predicates.add(entry.getKey());
+                listeners.add(freezer.apply(entry.getValue()));
+            }
+        }
+        return new PredicatePlan<>(predicates.toArray(new Predicate[0]), listeners.toArray(arrayFactory.apply(0)));
+    }
+
+    // must hold lock
+    public @NotNull RegionIndex<L> freezeRegions(@NotNull Reference2ReferenceMap<Region, G> regionEvents) {
+        ObjectArrayList<RegionIndex.Entry<L>> entries = new ObjectArrayList<>();
+        for (Reference2ReferenceMap.Entry<Region, G> entry : regionEvents.reference2ReferenceEntrySet()) {
+            if (!entry.getValue().isEmpty())
+                entries.add(new RegionIndex.Entry<>(entry.getKey(), freezer.apply(entry.getValue())));
+        }
+        return RegionIndex.build(entries);
+    }
+
+    // must hold lock
+    // called whenever a world's region index is rebuilt, returns true if the world gained its first or lost its last region
+    public boolean updateRegionWorlds(boolean hadRegions, boolean hasRegions) {
+        if (hadRegions == hasRegions)
+            return false;
+        regionWorlds += hasRegions ? 1 : -1;
+        anyRegions = regionWorlds != 0;
+        return true;
+    }
+
+    // the listeners registered for one class, type, tag, predicate or region
+    // S is the subclass itself, so getLive can return it
+    abstract static class Events<S extends Events<S>> {
+        private final EventRegistry<?, ?, ?> registry;
+        // the map these events are in, since they drop out of it once they're empty
+        private final Reference2ReferenceMap<Object, Events<?>> map;
+        private final Object key;
+
+        @SuppressWarnings("unchecked")
+        protected Events(@NotNull EventRegistry<?, ?, ?> registry, @NotNull Reference2ReferenceMap<?, ?> map, @NotNull Object key) {
+            this.registry = registry;
+            this.map = (Reference2ReferenceMap<Object, Events<?>>) map;
+            this.key = key;
+        }
+
+        // a list guarded by the registry's lock, that updates the registry whenever it changes
+        protected final <T> @NotNull ListenerList<T> newList(@NotNull IntFunction<T[]> arrayFactory) {
+            return new ListenerList<>(registry.lock, this::onChanged, arrayFactory);
+        }
+
+        public abstract boolean isEmpty();
+
+        // must hold the registry's lock
+        // if these events dropped out of their map and someone has asked for the same key since, add to those instead
+        @SuppressWarnings("unchecked")
+        protected final @NotNull S getLive() {
+            Events<?> live = map.get(key);
+            if (live == null)
+                map.put(key, live = this);
+            return (S) live;
+        }
+
+        private void onChanged() {
+            // don't keep keys (and whatever predicates capture) around after all of their listeners are gone
+            if (isEmpty() && map.get(key) == this)
+                map.remove(key);
+            registry.onChanged.accept(key);
+        }
+    }
+
+    // a frozen snapshot of every listener, built whenever they change and published with a single volatile write,
+    // so the dispatch path never needs to lock anything
+    static class Snapshot<L, I> {
+        // only events that have listeners are in here
+        public final Reference2ReferenceOpenHashMap<Class<?>, L> classListeners;
+        public final Reference2ReferenceOpenHashMap<EntityType<?>, L> typeListeners;
+        public final Reference2ReferenceOpenHashMap<Tag<EntityType<?>>, L> tagListeners;
+        // in registration order - a predicate whose listeners were all unregistered goes to the back if it's reused
+        public final PredicatePlan<L> predicatePlan;
+        // true if any type, tag or predicate listeners exist
+        public final boolean anyUnbound;
+        // generated invokers only know about the regular listeners, so they aren't used while any others exist
+        public final boolean anyRequiresInterpreter;
+        public final ClassValue<ClassPlan<L, I>> classPlans;
+        private final IntFunction<L[]> arrayFactory;
+        // type and tag listeners that apply to each entity type
+        private volatile Reference2ReferenceOpenHashMap<EntityType<?>, L[]> typePlans;
+
+        // must hold the registry's lock
+        public <G extends Events<G>> Snapshot(@NotNull EventRegistry<G, L, I> registry) {
+            arrayFactory = registry.arrayFactory;
+            classListeners = registry.freeze(registry.classEvents);
+            typeListeners = registry.freeze(registry.typeEvents);
+            tagListeners = registry.freeze(registry.tagEvents);
+            predicatePlan = registry.freezePredicates();
+            // there's no way to tell which classes these apply to before the entities actually exist
+            anyUnbound = !typeListeners.isEmpty() || !tagListeners.isEmpty() || predicatePlan.predicates.length != 0;
+            Predicate<L> requiresInterpreter = registry.requiresInterpreter;
+            anyRequiresInterpreter = anyMatch(classListeners.values(), requiresInterpreter)
+                    || anyMatch(typeListeners.values(), requiresInterpreter)
+                    || anyMatch(tagListeners.values(), requiresInterpreter)
+                    || anyMatch(Arrays.asList(predicatePlan.listeners), requiresInterpreter);
+            classPlans = new ClassValue<ClassPlan<L, I>>() {
+                @Override
+                protected ClassPlan<L, I> computeValue(Class<?> type) {
+                    L[] plan = EventUtils.flattenClassHierarchy(type, classListeners, arrayFactory);
+                    return new ClassPlan<>(plan, plan.length == 0 && !anyUnbound);
+                }
+            };
+        }
+
+        private static <L> boolean anyMatch(@NotNull Iterable<L> listenersIterable, @NotNull Predicate<L> predicate) {
+            for (L listeners : listenersIterable) {
+                if (predicate.test(listeners))
+                    return true;
+            }
+            return false;
+        }
+
+        public boolean hasListeners() {
+            return !classListeners.isEmpty() || anyUnbound;
+        }
+
+        public @NotNull Reference2ReferenceOpenHashMap<EntityType<?>, L[]> getTypePlans() {
+            // tags can't be resolved until they're bound, so this is done lazily from the dispatch path
+            // racing threads might both build this, but they'll build the same thing
+            Reference2ReferenceOpenHashMap<EntityType<?>, L[]> plans = typePlans;
+            if (plans == null)
+                typePlans = plans = createTypePlans();
+            return plans;
+        }
+
+        private @NotNull Reference2ReferenceOpenHashMap<EntityType<?>, L[]> createTypePlans() {
+            Reference2ReferenceOpenHashMap<EntityType<?>, ObjectArrayList<L>> builders = new Reference2ReferenceOpenHashMap<>();
+            for (Reference2ReferenceMap.Entry<EntityType<?>, L> entry : typeListeners.reference2ReferenceEntrySet())
+                builders.computeIfAbsent(entry.getKey(), type -> new ObjectArrayList<>()).add(entry.getValue());
+            for (Reference2ReferenceMap.Entry<Tag<EntityType<?>>, L> entry : tagListeners.reference2ReferenceEntrySet()) {
+                for (EntityType<?> type : entry.getKey().values())
+                    builders.computeIfAbsent(type, type1 -> new ObjectArrayList<>()).add(entry.getValue());
+            }
+            Reference2ReferenceOpenHashMap<EntityType<?>, L[]> plans = new Reference2ReferenceOpenHashMap<>(builders.size());
+            for (Reference2ReferenceMap.Entry<EntityType<?>, ObjectArrayList<L>> entry : builders.reference2ReferenceEntrySet())
+                plans.put(entry.getKey(), entry.getValue().toArray(arrayFactory.apply(0)));
+            return plans;
+        }
+    }
+
+    static final class ClassPlan<L, I> {
+        // class listeners that apply to this class, ordered from Entity down to the class itself
+        public final L[] classListeners;
+        // true if no class, type or predicate listeners can possibly apply to this class
+        // regions are per world, so they're checked separately
+        public final boolean idle;
+        // only used if Flags.GENERATE_INVOKERS is set
+        public volatile GeneratedInvoker<L, I> generated;
+
+        public ClassPlan(@NotNull L[] classListeners, boolean idle) {
+            this.classListeners = classListeners;
+            this.idle = idle;
+        }
+    }
+
+    static final class GeneratedInvoker<L, I> {
+        // the type plans this invoker was generated from
+        public final EntityType<?> type;
+        public final Reference2ReferenceOpenHashMap<EntityType<?>, L[]> typePlans;
+        // null if generation failed
+        public final @Nullable I invoker;
+
+        public GeneratedInvoker(@NotNull EntityType<?> type, @NotNull Reference2ReferenceOpenHashMap<EntityType<?>, L[]> typePlans,
+                                @Nullable I invoker) {
+            this.type = type;
+            this.typePlans = typePlans;
+            this.invoker = invoker;
+        }
+    }
+
+    static final class PredicatePlan<L> {
+        public final Predicate<Entity>[] predicates;
+        public final L[] listeners;
+
+        public PredicatePlan(@NotNull Predicate<Entity>[] predicates, @NotNull L[] listeners) {
+            this.predicates = predicates;
+            this.listeners = listeners;
+        }
+    }
+}
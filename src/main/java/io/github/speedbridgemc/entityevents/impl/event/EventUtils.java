@@ -2,9 +2,29 @@ package io.github.speedbridgemc.entityevents.impl.event;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.function.IntFunction;
+
 class EventUtils {
     public static boolean isSuperclassValid(@NotNull Class<?> clazz) {
         Class<?> superclass = clazz.getSuperclass();
         return superclass != null && superclass != Object.class;
     }
+
+    // collects the values mapped to clazz and its superclasses, ordered from the root class down to clazz
+    public static <T> @NotNull T[] flattenClassHierarchy(@NotNull Class<?> clazz, @NotNull Map<Class<?>, T> map,
+                                                         @NotNull IntFunction<T[]> arrayFactory) {
+        ArrayList<T> values = new ArrayList<>();
+        Class<?> current = clazz;
+        while (true) {
+            T value = map.get(current);
+            if (value != null)
+                values.add(0, value);
+            if (!isSuperclassValid(current))
+                break;
+            current = current.getSuperclass();
+        }
+        return values.toArray(arrayFactory.apply(values.size()));
+    }
 }
@@ -0,0 +1,318 @@
+package io.github.speedbridgemc.entityevents.impl.event;
+
+import net.fabricmc.fabric.api.util.TriState;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+// generates invoker classes with every listener of a dispatch plan unrolled into its own call site,
+// so that each call site only ever sees one receiver class and the JIT can inline the listeners
+public final class InvokerGenerator {
+    private static final Logger LOGGER = LogManager.getLogger("EntityEvents|InvokerGenerator");
+    private static final String GENERATED_PACKAGE = "io/github/speedbridgemc/entityevents/generated/";
+    private static final String TRI_STATE_NAME = Type.getInternalName(TriState.class);
+    private static final String TRI_STATE_DESC = Type.getDescriptor(TriState.class);
+    private static final String PREDICATE_NAME = Type.getInternalName(Predicate.class);
+    private static final String PREDICATE_DESC = Type.getDescriptor(Predicate.class);
+
+    // listener constants of classes that are being initialized, keyed by class name
+    private static final ConcurrentHashMap<String, Object[]> PENDING_CONSTANTS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    // describes the invoker interface and the listener interfaces of one kind of event
+    static final class Shape {
+        public final String name;
+        public final Class<?> invokerInterface;
+        public final Method invokerMethod, beforeMethod, afterMethod, cancelledMethod;
+
+        public Shape(@NotNull String name, @NotNull Class<?> invokerInterface,
+                     @NotNull Class<?> beforeInterface, @NotNull Class<?> afterInterface, @NotNull Class<?> cancelledInterface) {
+            this.name = name;
+            this.invokerInterface = invokerInterface;
+            invokerMethod = getFunctionalMethod(invokerInterface);
+            beforeMethod = getFunctionalMethod(beforeInterface);
+            afterMethod = getFunctionalMethod(afterInterface);
+            cancelledMethod = getFunctionalMethod(cancelledInterface);
+        }
+
+        private static @NotNull Method getFunctionalMethod(@NotNull Class<?> clazz) {
+            for (Method method : clazz.getMethods()) {
+                if (Modifier.isAbstract(method.getModifiers()))
+                    return method;
+            }
+            throw new IllegalArgumentException(clazz + " has no abstract methods");
+        }
+    }
+
+    // the listeners of one Events object, optionally guarded by a predicate
+    static final class Group {
+        public final @Nullable Predicate<?> predicate;
+        public final Object[] befores, afters, cancelleds;
+
+        public Group(@Nullable Predicate<?> predicate, @NotNull Object[] befores, @NotNull Object[] afters, @NotNull Object[] cancelleds) {
+            this.predicate = predicate;
+            this.befores = befores;
+            this.afters = afters;
+            this.cancelleds = cancelleds;
+        }
+    }
+
+    private InvokerGenerator() { }
+
+    @SuppressWarnings("unused") // called from generated class initializers
+    public static @NotNull Object[] takeConstants(@NotNull String className) {
+        Object[] constants = PENDING_CONSTANTS.remove(className);
+        if (constants == null)
+            throw new IllegalStateException("No constants pending for generated class " + className);
+        return constants;
+    }
+
+    public static <T> @Nullable T generate(@NotNull Shape shape, @NotNull Class<?> entityClass, @NotNull Group[] groups) {
+        String className = GENERATED_PACKAGE + shape.name + "$" + entityClass.getSimpleName() + "$" + NEXT_ID.getAndIncrement();
+        ArrayList<Object> constants = new ArrayList<>();
+        try {
+            byte[] bytes = new Writer(shape, className, groups, constants).write();
+            String binaryName = className.replace('/', '.');
+            PENDING_CONSTANTS.put(binaryName, constants.toArray());
+            Class<?> clazz = new GeneratedClassLoader(InvokerGenerator.class.getClassLoader()).define(binaryName, bytes);
+            LOGGER.debug("Generated {} for {} ({} constants)", binaryName, entityClass.getName(), constants.size());
+            //noinspection unchecked
+            return (T) clazz.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            LOGGER.error("Failed to generate " + shape.name + " invoker for " + entityClass.getName()
+                    + ", falling back to the regular dispatch path", e);
+            PENDING_CONSTANTS.remove(className.replace('/', '.'));
+            return null;
+        }
+    }
+
+    private static final class GeneratedClassLoader extends ClassLoader {
+        public GeneratedClassLoader(@NotNull ClassLoader parent) {
+            super(parent);
+        }
+
+        public @NotNull Class<?> define(@NotNull String binaryName, byte[] bytes) {
+            return defineClass(binaryName, bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class Writer {
+        private final Shape shape;
+        private final String className;
+        private final Group[] groups;
+        private final ArrayList<Object> constants;
+        private final ArrayList<String> constantDescs = new ArrayList<>();
+        private final Type[] argTypes;
+        private final int cancelledVar, firstPredicateVar;
+
+        public Writer(@NotNull Shape shape, @NotNull String className, @NotNull Group[] groups, @NotNull ArrayList<Object> constants) {
+            this.shape = shape;
+            this.className = className;
+            this.groups = groups;
+            this.constants = constants;
+            argTypes = Type.getArgumentTypes(shape.invokerMethod);
+            int argSize = 1;
+            for (Type argType : argTypes)
+                argSize += argType.getSize();
+            cancelledVar = argSize;
+            firstPredicateVar = argSize + 1;
+        }
+
+        public byte[] write() {
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+                @Override
+                protected String getCommonSuperClass(String type1, String type2) {
+                    // never reached for the code we emit, and must not load classes if it is
+                    return "java/lang/Object";
+                }
+            };
+            cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, className, null,
+                    "java/lang/Object", new String[] { Type.getInternalName(shape.invokerInterface) });
+
+            MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+            init.visitCode();
+            init.visitVarInsn(Opcodes.ALOAD, 0);
+            init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            init.visitInsn(Opcodes.RETURN);
+            init.visitMaxs(0, 0);
+            init.visitEnd();
+
+            // this fills in the constants list
+            writeInvokeMethod(cw);
+
+            for (int i = 0; i < constants.size(); i++)
+                cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "c" + i, constantDescs.get(i), null, null)
+                        .visitEnd();
+            writeStaticInitializer(cw);
+
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+
+        private void writeStaticInitializer(@NotNull ClassWriter cw) {
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+            mv.visitCode();
+            mv.visitLdcInsn(className.replace('/', '.'));
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(InvokerGenerator.class), "takeConstants",
+                    "(Ljava/lang/String;)[Ljava/lang/Object;", false);
+            for (int i = 0; i < constants.size(); i++) {
+                mv.visitInsn(Opcodes.DUP);
+                mv.visitLdcInsn(i);
+                mv.visitInsn(Opcodes.AALOAD);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getType(constantDescs.get(i)).getInternalName());
+                mv.visitFieldInsn(Opcodes.PUTSTATIC, className, "c" + i, constantDescs.get(i));
+            }
+            mv.visitInsn(Opcodes.POP);
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        private void loadConstant(@NotNull MethodVisitor mv, @NotNull Object constant, @NotNull String desc) {
+            int index = constants.size();
+            constants.add(constant);
+            constantDescs.add(desc);
+            mv.visitFieldInsn(Opcodes.GETSTATIC, className, "c" + index, desc);
+        }
+
+        private void loadArgs(@NotNull MethodVisitor mv) {
+            int slot = 1;
+            for (Type argType : argTypes) {
+                mv.visitVarInsn(argType.getOpcode(Opcodes.ILOAD), slot);
+                slot += argType.getSize();
+            }
+        }
+
+        private void invokeListener(@NotNull MethodVisitor mv, @NotNull Object listener, @NotNull Method method) {
+            String owner = Type.getInternalName(method.getDeclaringClass());
+            loadConstant(mv, listener, "L" + owner + ";");
+            loadArgs(mv);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, owner, method.getName(), Type.getMethodDescriptor(method), true);
+        }
+
+        private void testPredicate(@NotNull MethodVisitor mv, @NotNull Predicate<?> predicate) {
+            loadConstant(mv, predicate, PREDICATE_DESC);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, PREDICATE_NAME, "test", "(Ljava/lang/Object;)Z", true);
+        }
+
+        /*
+        boolean invoke(entity, ...) {
+            boolean cancelled = false;
+            byte p0 = UNKNOWN, p1 = UNKNOWN, ...;
+            before:
+            for each group:
+                if (group has a predicate && !(p = test(entity)))
+                    continue;
+                for each before listener:
+                    TriState ret = listener.before(entity, ...);
+                    if (ret == TRUE) { cancelled = true; goto after; }
+                    if (ret == FALSE) continue outer;
+            after:
+            for each group:
+                if (group has a predicate && !(p != UNKNOWN ? p == MATCHED : test(entity)))
+                    continue;
+                if (cancelled) call every cancelled listener; else call every after listener
+            return cancelled;
+        }
+         */
+        private void writeInvokeMethod(@NotNull ClassWriter cw) {
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, shape.invokerMethod.getName(),
+                    Type.getMethodDescriptor(shape.invokerMethod), null, null);
+            mv.visitCode();
+
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitVarInsn(Opcodes.ISTORE, cancelledVar);
+            int predicateVar = firstPredicateVar;
+            for (Group group : groups) {
+                if (group.predicate != null) {
+                    mv.visitInsn(Opcodes.ICONST_0 + PredicateScratch.UNKNOWN);
+                    mv.visitVarInsn(Opcodes.ISTORE, predicateVar++);
+                }
+            }
+
+            Label afterPhase = new Label(), cancelledLabel = new Label();
+            predicateVar = firstPredicateVar;
+            for (Group group : groups) {
+                Label groupEnd = new Label();
+                if (group.predicate != null) {
+                    Label matched = new Label();
+                    testPredicate(mv, group.predicate);
+                    mv.visitJumpInsn(Opcodes.IFNE, matched);
+                    mv.visitInsn(Opcodes.ICONST_0 + PredicateScratch.NOT_MATCHED);
+                    mv.visitVarInsn(Opcodes.ISTORE, predicateVar);
+                    mv.visitJumpInsn(Opcodes.GOTO, groupEnd);
+                    mv.visitLabel(matched);
+                    mv.visitInsn(Opcodes.ICONST_0 + PredicateScratch.MATCHED);
+                    mv.visitVarInsn(Opcodes.ISTORE, predicateVar);
+                    predicateVar++;
+                }
+                for (Object before : group.befores) {
+                    Label next = new Label();
+                    invokeListener(mv, before, shape.beforeMethod);
+                    mv.visitInsn(Opcodes.DUP);
+                    mv.visitFieldInsn(Opcodes.GETSTATIC, TRI_STATE_NAME, "DEFAULT", TRI_STATE_DESC);
+                    mv.visitJumpInsn(Opcodes.IF_ACMPEQ, next);
+                    mv.visitFieldInsn(Opcodes.GETSTATIC, TRI_STATE_NAME, "TRUE", TRI_STATE_DESC);
+                    mv.visitJumpInsn(Opcodes.IF_ACMPNE, groupEnd);
+                    mv.visitJumpInsn(Opcodes.GOTO, cancelledLabel);
+                    mv.visitLabel(next);
+                    mv.visitInsn(Opcodes.POP);
+                }
+                mv.visitLabel(groupEnd);
+            }
+            mv.visitJumpInsn(Opcodes.GOTO, afterPhase);
+            mv.visitLabel(cancelledLabel);
+            mv.visitInsn(Opcodes.ICONST_1);
+            mv.visitVarInsn(Opcodes.ISTORE, cancelledVar);
+
+            mv.visitLabel(afterPhase);
+            predicateVar = firstPredicateVar;
+            for (Group group : groups) {
+                Label skip = new Label();
+                if (group.predicate != null) {
+                    Label test = new Label(), run = new Label();
+                    mv.visitVarInsn(Opcodes.ILOAD, predicateVar);
+                    mv.visitJumpInsn(Opcodes.IFEQ, test); // UNKNOWN
+                    mv.visitVarInsn(Opcodes.ILOAD, predicateVar);
+                    mv.visitInsn(Opcodes.ICONST_0 + PredicateScratch.MATCHED);
+                    mv.visitJumpInsn(Opcodes.IF_ICMPEQ, run);
+                    mv.visitJumpInsn(Opcodes.GOTO, skip);
+                    mv.visitLabel(test);
+                    testPredicate(mv, group.predicate);
+                    mv.visitJumpInsn(Opcodes.IFEQ, skip);
+                    mv.visitLabel(run);
+                    predicateVar++;
+                }
+                Label notCancelled = new Label();
+                mv.visitVarInsn(Opcodes.ILOAD, cancelledVar);
+                mv.visitJumpInsn(Opcodes.IFEQ, notCancelled);
+                for (Object cancelled : group.cancelleds)
+                    invokeListener(mv, cancelled, shape.cancelledMethod);
+                mv.visitJumpInsn(Opcodes.GOTO, skip);
+                mv.visitLabel(notCancelled);
+                for (Object after : group.afters)
+                    invokeListener(mv, after, shape.afterMethod);
+                mv.visitLabel(skip);
+            }
+
+            mv.visitVarInsn(Opcodes.ILOAD, cancelledVar);
+            mv.visitInsn(Opcodes.IRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+    }
+}
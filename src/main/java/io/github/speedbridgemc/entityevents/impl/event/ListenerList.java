@@ -0,0 +1,104 @@
+package io.github.speedbridgemc.entityevents.impl.event;
+
+import io.github.speedbridgemc.entityevents.api.ListenerHandle;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+// listeners of one kind, ordered by priority
+// the array handed to the dispatch path is rebuilt on every change and never modified afterwards
+final class ListenerList<T> {
+    private final class Entry implements ListenerHandle {
+        public final T listener;
+        public final int priority;
+        public final int interval;
+
+        public Entry(@NotNull T listener, int priority, int interval) {
+            this.listener = listener;
+            this.priority = priority;
+            this.interval = interval;
+        }
+
+        @Override
+        public void close() {
+            remove(this);
+        }
+    }
+
+    private final Object lock;
+    private final Runnable onChanged;
+    private final IntFunction<T[]> arrayFactory;
+    private final ObjectArrayList<Entry> entries = new ObjectArrayList<>();
+    private T[] array;
+    // the interval of each listener in array, or null if they all run every time
+    private int @Nullable [] intervals;
+
+    // onChanged is run while holding lock
+    public ListenerList(@NotNull Object lock, @NotNull Runnable onChanged, @NotNull IntFunction<T[]> arrayFactory) {
+        this.lock = lock;
+        this.onChanged = onChanged;
+        this.arrayFactory = arrayFactory;
+        array = arrayFactory.apply(0);
+    }
+
+    public @NotNull T[] getArray() {
+        return array;
+    }
+
+    public int @Nullable [] getIntervals() {
+        return intervals;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public @NotNull ListenerHandle add(@NotNull T listener, int priority) {
+        return add(listener, priority, 1);
+    }
+
+    // the listener only runs every interval ticks, see EntityTickEvents.listenBeforeEvery
+    // it's kept in priority order with the others, it's up to the dispatch path to skip it on the other ticks
+    public @NotNull ListenerHandle add(@NotNull T listener, int priority, int interval) {
+        Entry entry = new Entry(listener, priority, interval);
+        synchronized (lock) {
+            // after every entry with the same or a higher priority, so that ties keep registration order
+            int index = entries.size();
+            while (index > 0 && entries.get(index - 1).priority < priority)
+                index--;
+            entries.add(index, entry);
+            rebuild();
+        }
+        return entry;
+    }
+
+    private void remove(@NotNull Entry entry) {
+        synchronized (lock) {
+            // entries don't override equals, so this only removes this exact registration
+            if (entries.remove(entry))
+                rebuild();
+        }
+    }
+
+    private void rebuild() {
+        T[] newArray = arrayFactory.apply(entries.size());
+        int[] newIntervals = null;
+        for (int i = 0; i < newArray.length; i++) {
+            Entry entry = entries.get(i);
+            newArray[i] = entry.listener;
+            if (entry.interval != 1) {
+                if (newIntervals == null) {
+                    newIntervals = new int[newArray.length];
+                    Arrays.fill(newIntervals, 1);
+                }
+                newIntervals[i] = entry.interval;
+            }
+        }
+        array = newArray;
+        intervals = newIntervals;
+        onChanged.run();
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.speedbridgemc.entityevents.impl.event;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+// stack of predicate and region results for in-flight invocations, so each one is tested at most once per event
+// invocations can nest (e.g. a listener damaging another entity), hence the stack
+// one per thread, since worlds may be ticked in parallel and damage can cross into another world's entities
+final class PredicateScratch {
+    public static final byte UNKNOWN = 0, NOT_MATCHED = 1, MATCHED = 2;
+
+    private static final ThreadLocal<PredicateScratch> CURRENT = ThreadLocal.withInitial(PredicateScratch::new);
+
+    public static @NotNull PredicateScratch get() {
+        return CURRENT.get();
+    }
+
+    private byte[] results = new byte[16];
+    private int top;
+
+    public int push(int count) {
+        int base = top;
+        top += count;
+        if (top > results.length)
+            results = Arrays.copyOf(results, Math.max(top, results.length * 2));
+        Arrays.fill(results, base, top, UNKNOWN);
+        return base;
+    }
+
+    public void pop(int base) {
+        top = base;
+    }
+
+    public byte get(int index) {
+        return results[index];
+    }
+
+    public void set(int index, byte result) {
+        results[index] = result;
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.speedbridgemc.entityevents.impl.event;
+
+import io.github.speedbridgemc.entityevents.impl.WorldStorage;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.MathHelper;
+import java.util.Collection;
+
+import static io.github.speedbridgemc.entityevents.impl.ServerWorldHooks.getOrCreateWorldStorage;
+
+// an area of one world that listeners can be scoped to, see EntityTickEvents.inBox and inChunks
+// every call creates a new region, so each one gets its own events
+public final class Region {
+    // more than this is almost certainly a mistake, and would make the region index huge
+    private static final int MAX_SECTIONS = 1 << 20;
+
+    private final WorldStorage storage;
+    // null if the region is made of whole chunks, in which case every entity in one of its sections is in it
+    private final @Nullable Box box;
+    private final long[] sections;
+
+    private Region(@NotNull WorldStorage storage, @Nullable Box box, @NotNull long[] sections) {
+        this.storage = storage;
+        this.box = box;
+        this.sections = sections;
+    }
+
+    public static @NotNull Region ofBox(@NotNull ServerWorld world, @NotNull Box box) {
+        int minX = ChunkSectionPos.getSectionCoord(MathHelper.floor(box.minX));
+        int minY = Math.max(ChunkSectionPos.getSectionCoord(MathHelper.floor(box.minY)), world.getBottomSectionCoord());
+        int minZ = ChunkSectionPos.getSectionCoord(MathHelper.floor(box.minZ));
+        int maxX = ChunkSectionPos.getSectionCoord(MathHelper.floor(box.maxX));
+        int maxY = Math.min(ChunkSectionPos.getSectionCoord(MathHelper.floor(box.maxY)), world.getTopSectionCoord() - 1);
+        int maxZ = ChunkSectionPos.getSectionCoord(MathHelper.floor(box.maxZ));
+        long count = (long) (maxX - minX + 1) * Math.max(0, maxY - minY + 1) * (maxZ - minZ + 1);
+        if (count > MAX_SECTIONS)
+            throw new IllegalArgumentException("Region " + box + " covers too many chunk sections (" + count + ")");
+        long[] sections = new long[(int) count];
+        int i = 0;
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++)
+                    sections[i++] = ChunkSectionPos.asLong(x, y, z);
+            }
+        }
+        return new Region(getOrCreateWorldStorage(world), box, sections);
+    }
+
+    public static @NotNull Region ofChunks(@NotNull ServerWorld world, @NotNull Collection<ChunkPos> chunks) {
+        int minY = world.getBottomSectionCoord(), maxY = world.getTopSectionCoord() - 1;
+        long count = (long) chunks.size() * Math.max(0, maxY - minY + 1);
+        if (count > MAX_SECTIONS)
+            throw new IllegalArgumentException("Region covers too many chunk sections (" + count + ")");
+        LongOpenHashSet sections = new LongOpenHashSet((int) count);
+        for (ChunkPos chunk : chunks) {
+            for (int y = minY; y <= maxY; y++)
+                sections.add(ChunkSectionPos.asLong(chunk.x, y, chunk.z));
+        }
+        return new Region(getOrCreateWorldStorage(world), null, sections.toLongArray());
+    }
+
+    public static long getSection(@NotNull Entity entity) {
+        return ChunkSectionPos.asLong(ChunkSectionPos.getSectionCoord(entity.getBlockX()),
+                ChunkSectionPos.getSectionCoord(entity.getBlockY()), ChunkSectionPos.getSectionCoord(entity.getBlockZ()));
+    }
+
+    public @NotNull WorldStorage getStorage() {
+        return storage;
+    }
+
+    public @NotNull long[] getSections() {
+        return sections;
+    }
+
+    // only called for entities in one of the region's sections
+    public boolean contains(@NotNull Entity entity) {
+        return box == null || box.contains(entity.getX(), entity.getY(), entity.getZ());
+    }
+}
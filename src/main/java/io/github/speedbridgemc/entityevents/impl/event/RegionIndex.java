@@ -0,0 +1,68 @@
+package io.github.speedbridgemc.entityevents.impl.event;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+// the regions of one world that have listeners, indexed by the chunk sections they cover
+// never modified after it's built - changes build a new index, like the listener registries
+final class RegionIndex<L> {
+    public static final class Entry<L> {
+        public final Region region;
+        public final L listeners;
+
+        public Entry(@NotNull Region region, @NotNull L listeners) {
+            this.region = region;
+            this.listeners = listeners;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+    @SuppressWarnings("rawtypes")
+    private static final RegionIndex EMPTY = new RegionIndex<>(new Long2ObjectOpenHashMap<>());
+
+    private final Long2ObjectOpenHashMap<Entry<L>[]> sections;
+
+    private RegionIndex(@NotNull Long2ObjectOpenHashMap<Entry<L>[]> sections) {
+        this.sections = sections;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <L> @NotNull RegionIndex<L> empty() {
+        return (RegionIndex<L>) EMPTY;
+    }
+
+    // entries are kept in the given order within each section
+    @SuppressWarnings("unchecked")
+    public static <L> @NotNull RegionIndex<L> build(@NotNull List<Entry<L>> entries) {
+        if (entries.isEmpty())
+            return empty();
+        Long2ObjectOpenHashMap<ObjectArrayList<Entry<L>>> builders = new Long2ObjectOpenHashMap<>();
+        for (Entry<L> entry : entries) {
+            for (long section : entry.region.getSections()) {
+                ObjectArrayList<Entry<L>> builder = builders.get(section);
+                if (builder == null)
+                    builders.put(section, builder = new ObjectArrayList<>());
+                builder.add(entry);
+            }
+        }
+        Long2ObjectOpenHashMap<Entry<L>[]> sections = new Long2ObjectOpenHashMap<>(builders.size());
+        for (Long2ObjectOpenHashMap.Entry<ObjectArrayList<Entry<L>>> entry : builders.long2ObjectEntrySet())
+            sections.put(entry.getLongKey(), entry.getValue().toArray(new Entry[0]));
+        return new RegionIndex<>(sections);
+    }
+
+    public boolean isEmpty() {
+        return sections.isEmpty();
+    }
+
+    // the regions covering the section, never null
+    @SuppressWarnings("unchecked")
+    public @NotNull Entry<L>[] get(long section) {
+        Entry<L>[] entries = sections.get(section);
+        return entries != null ? entries : (Entry<L>[]) NO_ENTRIES;
+    }
+}
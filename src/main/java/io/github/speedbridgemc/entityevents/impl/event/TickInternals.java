@@ -1,171 +1,595 @@
 package io.github.speedbridgemc.entityevents.impl.event;
 
 import io.github.speedbridgemc.entityevents.api.EntityTickEvents;
+import io.github.speedbridgemc.entityevents.api.ListenerHandle;
+import io.github.speedbridgemc.entityevents.impl.EntityHooks;
+import io.github.speedbridgemc.entityevents.impl.Flags;
+import io.github.speedbridgemc.entityevents.impl.ServerWorldHooks;
 import io.github.speedbridgemc.entityevents.impl.WorldStorage;
-import it.unimi.dsi.fastutil.objects.Reference2BooleanOpenHashMap;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceMap;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceOpenHashMap;
-import net.fabricmc.fabric.api.event.Event;
-import net.fabricmc.fabric.api.event.EventFactory;
 import net.fabricmc.fabric.api.util.TriState;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.tag.Tag;
+import net.minecraft.world.World;
+import java.util.Arrays;
 import java.util.function.Predicate;
 
 import static io.github.speedbridgemc.entityevents.impl.ServerWorldHooks.getOrCreateWorldStorage;
-import static io.github.speedbridgemc.entityevents.impl.ServerWorldHooks.getWorldStorage;
 
 public final class TickInternals {
     public TickInternals() { }
 
-    private static final class Events<E extends Entity> implements EntityTickEvents<E> {
-        public final Event<Before<E>> beforeEvent;
-        public final Event<After<E>> afterEvent;
-        public final Event<Cancelled<E>> cancelledEvent;
-
-        public Events() {
-            beforeEvent = EventFactory.createArrayBacked(Before.class, befores -> (entity) -> {
-                TriState ret = TriState.DEFAULT;
-                for (Before<E> before : befores) {
-                    ret = before.beforeTick(entity);
-                    if (ret != TriState.DEFAULT)
-                        break;
-                }
-                return ret;
-            });
-            afterEvent = EventFactory.createArrayBacked(After.class, afters -> (entity) -> {
-                for (After<E> after : afters)
-                    after.afterTick(entity);
-            });
-            cancelledEvent = EventFactory.createArrayBacked(Cancelled.class, cancelleds -> (entity) -> {
-                for (Cancelled<E> cancelled : cancelleds)
-                    cancelled.tickCancelled(entity);
-            });
+    // regions of this world, only touched while holding EVENTS.lock, see EventRegistry.getRegionEvents
+    private final Reference2ReferenceOpenHashMap<Region, Events<Entity>> regionEvents = new Reference2ReferenceOpenHashMap<>();
+    // region listeners in this world, only replaced while holding EVENTS.lock
+    private volatile RegionIndex<Listeners> regionIndex = RegionIndex.empty();
+
+    private static int checkInterval(int interval) {
+        if (interval < 1)
+            throw new IllegalArgumentException("Interval must be at least 1, got " + interval);
+        return interval;
+    }
+
+    private static final class Events<E extends Entity> extends EventRegistry.Events<Events<E>> implements EntityTickEvents<E> {
+        @SuppressWarnings("unchecked")
+        public final ListenerList<Before<E>> befores = newList(Before[]::new);
+        @SuppressWarnings("unchecked")
+        public final ListenerList<After<E>> afters = newList(After[]::new);
+        @SuppressWarnings("unchecked")
+        public final ListenerList<Cancelled<E>> cancelleds = newList(Cancelled[]::new);
+        @SuppressWarnings("unchecked")
+        public final ListenerList<After<E>> deferredAfters = newList(After[]::new);
+        @SuppressWarnings("unchecked")
+        public final ListenerList<Cancelled<E>> deferredCancelleds = newList(Cancelled[]::new);
+
+        public Events(@NotNull EventRegistry<?, ?, ?> registry, @NotNull Reference2ReferenceMap<?, ?> map, @NotNull Object key) {
+            super(registry, map, key);
         }
 
         @Override
         public @NotNull EntityTickEvents<E> registerBefore(@NotNull Before<E> callback) {
-            beforeEvent.register(callback);
+            listenBefore(callback);
             return this;
         }
 
         @Override
         public @NotNull EntityTickEvents<E> registerAfter(@NotNull After<E> callback) {
-            afterEvent.register(callback);
+            listenAfter(callback);
             return this;
         }
 
         @Override
         public @NotNull EntityTickEvents<E> registerCancelled(@NotNull Cancelled<E> callback) {
-            cancelledEvent.register(callback);
+            listenCancelled(callback);
             return this;
         }
+
+        @Override
+        public @NotNull ListenerHandle listenBefore(@NotNull Before<E> callback, int priority) {
+            synchronized (EVENTS.lock) {
+                return getLive().befores.add(callback, priority);
+            }
+        }
+
+        @Override
+        public @NotNull ListenerHandle listenAfter(@NotNull After<E> callback, int priority) {
+            synchronized (EVENTS.lock) {
+                return getLive().afters.add(callback, priority);
+            }
+        }
+
+        @Override
+        public @NotNull ListenerHandle listenCancelled(@NotNull Cancelled<E> callback, int priority) {
+            synchronized (EVENTS.lock) {
+                return getLive().cancelleds.add(callback, priority);
+            }
+        }
+
+        @Override
+        public @NotNull ListenerHandle listenAfterDeferred(@NotNull After<E> callback, int priority) {
+            synchronized (EVENTS.lock) {
+                return getLive().deferredAfters.add(callback, priority);
+            }
+        }
+
+        @Override
+        public @NotNull ListenerHandle listenCancelledDeferred(@NotNull Cancelled<E> callback, int priority) {
+            synchronized (EVENTS.lock) {
+                return getLive().deferredCancelleds.add(callback, priority);
+            }
+        }
+
+        @Override
+        public @NotNull ListenerHandle listenBeforeEvery(int interval, @NotNull Before<E> callback, int priority) {
+            checkInterval(interval);
+            synchronized (EVENTS.lock) {
+                return getLive().befores.add(callback, priority, interval);
+            }
+        }
+
+        @Override
+        public @NotNull ListenerHandle listenAfterEvery(int interval, @NotNull After<E> callback, int priority) {
+            checkInterval(interval);
+            synchronized (EVENTS.lock) {
+                return getLive().afters.add(callback, priority, interval);
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return befores.isEmpty() && afters.isEmpty() && cancelleds.isEmpty()
+                    && deferredAfters.isEmpty() && deferredCancelleds.isEmpty();
+        }
+    }
+
+    // an immutable copy of an Events object's listeners, safe to read from any thread
+    private static final class Listeners {
+        // the bucket of listeners that run every tick
+        public static final int EVERY_TICK = -1;
+
+        // interval listeners are in here too, in priority order with the rest
+        public final EntityTickEvents.Before<Entity>[] befores;
+        public final EntityTickEvents.After<Entity>[] afters;
+        public final EntityTickEvents.Cancelled<Entity>[] cancelleds;
+        // only run at the end of the world tick, see DeferredQueue
+        public final EntityTickEvents.After<Entity>[] deferredAfters;
+        public final EntityTickEvents.Cancelled<Entity>[] deferredCancelleds;
+        // interval listeners with the same interval share a bucket, which is either due for an entity or not
+        public final int[] intervals;
+        // the bucket of each before and after listener - null if none of them are interval listeners
+        public final int @Nullable [] beforeBuckets, afterBuckets;
+        // true if nothing here runs unless one of the buckets is due
+        public final boolean onlyIntervals;
+
+        public Listeners(@NotNull Events<Entity> events) {
+            // the arrays are replaced, never modified, so sharing them is fine
+            befores = events.befores.getArray();
+            afters = events.afters.getArray();
+            cancelleds = events.cancelleds.getArray();
+            deferredAfters = events.deferredAfters.getArray();
+            deferredCancelleds = events.deferredCancelleds.getArray();
+            IntArrayList intervals = new IntArrayList();
+            beforeBuckets = createBuckets(events.befores.getIntervals(), intervals);
+            afterBuckets = createBuckets(events.afters.getIntervals(), intervals);
+            this.intervals = intervals.toIntArray();
+            // cancelled listeners only run if a before listener cancels, and none of those can run off their buckets
+            onlyIntervals = !runsEveryTick(befores, beforeBuckets) && !runsEveryTick(afters, afterBuckets)
+                    && deferredAfters.length == 0 && deferredCancelleds.length == 0;
+        }
+
+        private static int @Nullable [] createBuckets(int @Nullable [] listenerIntervals, @NotNull IntArrayList intervals) {
+            if (listenerIntervals == null)
+                return null;
+            int[] buckets = new int[listenerIntervals.length];
+            for (int i = 0; i < buckets.length; i++) {
+                int interval = listenerIntervals[i];
+                // every multiple of 1 is due
+                if (interval == 1) {
+                    buckets[i] = EVERY_TICK;
+                    continue;
+                }
+                int bucket = intervals.indexOf(interval);
+                if (bucket < 0) {
+                    bucket = intervals.size();
+                    intervals.add(interval);
+                }
+                buckets[i] = bucket;
+            }
+            return buckets;
+        }
+
+        private static boolean runsEveryTick(@NotNull Object[] listeners, int @Nullable [] buckets) {
+            if (buckets == null)
+                return listeners.length != 0;
+            for (int bucket : buckets) {
+                if (bucket == EVERY_TICK)
+                    return true;
+            }
+            return false;
+        }
+
+        public boolean requiresInterpreter() {
+            return deferredAfters.length != 0 || deferredCancelleds.length != 0;
+        }
+
+        public boolean hasIntervals() {
+            return intervals.length != 0;
+        }
+
+        // bit n is set if bucket n is due at slot, see invoke - only the first 64 buckets fit, isDue checks any others
+        public long getDueBuckets(long slot) {
+            long due = 0;
+            for (int bucket = 0; bucket < Math.min(intervals.length, 64); bucket++) {
+                if (slot % intervals[bucket] == 0)
+                    due |= 1L << bucket;
+            }
+            return due;
+        }
+
+        public boolean isDue(int bucket, long dueBuckets, long slot) {
+            if (bucket == EVERY_TICK)
+                return true;
+            return bucket < 64 ? (dueBuckets & 1L << bucket) != 0 : slot % intervals[bucket] == 0;
+        }
+
+        public boolean anyDue(long slot) {
+            for (int interval : intervals) {
+                if (slot % interval == 0)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    // implemented by classes generated by InvokerGenerator
+    public interface Invoker {
+        boolean invoke(@NotNull Entity entity);
+    }
+
+    private static final @Nullable InvokerGenerator.Shape INVOKER_SHAPE = Flags.GENERATE_INVOKERS
+            ? new InvokerGenerator.Shape("TickInvoker", Invoker.class,
+            EntityTickEvents.Before.class, EntityTickEvents.After.class, EntityTickEvents.Cancelled.class)
+            : null;
+
+    private static final EventRegistry<Events<Entity>, Listeners, Invoker> EVENTS = new EventRegistry<>(Events::new,
+            Listeners::new, Listeners[]::new, Listeners::requiresInterpreter, TickInternals::onChanged);
+
+    // true while any listener is registered - the hooks check this before calling invoke at all
+    public static volatile boolean active;
+
+    private static final class Registry extends EventRegistry.Snapshot<Listeners, Invoker> {
+        // must hold EVENTS.lock
+        public Registry() {
+            super(EVENTS);
+        }
     }
 
-    private static final Reference2ReferenceOpenHashMap<Class<?>, Events<Entity>> CLASS_EVENTS
-            = new Reference2ReferenceOpenHashMap<>();
-    private static final Reference2ReferenceOpenHashMap<EntityType<?>, Events<Entity>> TYPE_EVENTS
-            = new Reference2ReferenceOpenHashMap<>();
-    private static final Reference2ReferenceOpenHashMap<Predicate<Entity>, Events<Entity>> PREDICATE_EVENTS
-            = new Reference2ReferenceOpenHashMap<>();
+    private static volatile Registry registry = new Registry();
+
+    public static void onTagsReloaded() {
+        synchronized (EVENTS.lock) {
+            registry = new Registry();
+        }
+    }
+
+    // must hold EVENTS.lock
+    private static void onChanged(@NotNull Object key) {
+        // regions aren't part of the Registry, only of their world's RegionIndex
+        if (key instanceof Region)
+            onRegionsChanged(((Region) key).getStorage().getTickInternals());
+        else
+            onListenersChanged();
+    }
+
+    // must hold EVENTS.lock
+    private static void onListenersChanged() {
+        Registry newRegistry = new Registry();
+        registry = newRegistry;
+        active = newRegistry.hasListeners() || EVENTS.anyRegions;
+    }
+
+    // must hold EVENTS.lock
+    private static void onRegionsChanged(@NotNull TickInternals internals) {
+        boolean hadRegions = !internals.regionIndex.isEmpty();
+        internals.regionIndex = EVENTS.freezeRegions(internals.regionEvents);
+        if (EVENTS.updateRegionWorlds(hadRegions, !internals.regionIndex.isEmpty()))
+            active = registry.hasListeners() || EVENTS.anyRegions;
+    }
+
+    // forgets the world's regions, so it doesn't count towards anyRegions anymore
+    public static void onWorldUnloaded(@NotNull ServerWorld world) {
+        WorldStorage storage = ((ServerWorldHooks) world).entityevents$getWorldStorage();
+        if (storage == null)
+            return;
+        synchronized (EVENTS.lock) {
+            TickInternals internals = storage.getTickInternals();
+            internals.regionEvents.clear();
+            onRegionsChanged(internals);
+        }
+    }
+
+    // payloads of deferred After and Cancelled listeners, stored column by column so queueing doesn't allocate
+    // one per thread, since worlds may be ticked in parallel - each world's thread flushes it at the end of the world tick
+    private static final class DeferredQueue {
+        private Entity[] entities = new Entity[16];
+        private Listeners[] listeners = new Listeners[16];
+        private boolean[] cancelled = new boolean[16];
+        private int size;
+
+        public void add(@NotNull Entity entity, @NotNull Listeners listeners, boolean cancelled) {
+            if (size == entities.length) {
+                int newLength = size * 2;
+                entities = Arrays.copyOf(entities, newLength);
+                this.listeners = Arrays.copyOf(this.listeners, newLength);
+                this.cancelled = Arrays.copyOf(this.cancelled, newLength);
+            }
+            entities[size] = entity;
+            this.listeners[size] = listeners;
+            this.cancelled[size] = cancelled;
+            size++;
+        }
+
+        public void flush() {
+            try {
+                // listeners might queue more events while this runs, those are flushed here too
+                for (int i = 0; i < size; i++) {
+                    if (cancelled[i]) {
+                        for (EntityTickEvents.Cancelled<Entity> cancelledCallback : listeners[i].deferredCancelleds)
+                            cancelledCallback.tickCancelled(entities[i]);
+                    } else {
+                        for (EntityTickEvents.After<Entity> after : listeners[i].deferredAfters)
+                            after.afterTick(entities[i]);
+                    }
+                }
+            } finally {
+                // don't keep entities alive until the next flush
+                Arrays.fill(entities, 0, size, null);
+                Arrays.fill(listeners, 0, size, null);
+                size = 0;
+            }
+        }
+    }
+
+    private static final ThreadLocal<DeferredQueue> DEFERRED = ThreadLocal.withInitial(DeferredQueue::new);
+
+    // called at the end of every world tick
+    public static void flushDeferred() {
+        DEFERRED.get().flush();
+    }
 
     @SuppressWarnings("unchecked")
     public static <E extends Entity> @NotNull EntityTickEvents<E> ofClass(@NotNull Class<E> clazz) {
-        return (EntityTickEvents<E>) CLASS_EVENTS.computeIfAbsent(clazz, aClass -> new Events<>());
+        return (EntityTickEvents<E>) (EntityTickEvents<?>) EVENTS.getClassEvents(clazz);
     }
 
     @SuppressWarnings("unchecked")
     public static <E extends Entity> @NotNull EntityTickEvents<E> of(@NotNull EntityType<E> type) {
-        return (EntityTickEvents<E>) TYPE_EVENTS.computeIfAbsent(type, entityType -> new Events<>());
+        return (EntityTickEvents<E>) (EntityTickEvents<?>) EVENTS.getTypeEvents(type);
+    }
+
+    public static @NotNull EntityTickEvents<Entity> inTag(@NotNull Tag<EntityType<?>> tag) {
+        return EVENTS.getTagEvents(tag);
     }
 
     public static @NotNull EntityTickEvents<Entity> matching(@NotNull Predicate<Entity> predicate) {
-        return PREDICATE_EVENTS.computeIfAbsent(predicate, predicate1 -> new Events<>());
+        return EVENTS.getPredicateEvents(predicate);
     }
 
-    private final Reference2BooleanOpenHashMap<Entity> invokedThisTick
-            = new Reference2BooleanOpenHashMap<>();
+    public static @NotNull EntityTickEvents<Entity> inRegion(@NotNull Region region) {
+        return EVENTS.getRegionEvents(region.getStorage().getTickInternals().regionEvents, region);
+    }
 
     @SuppressWarnings("unused")
     public static boolean invoke(@NotNull Entity entity) {
-        if (entity.getEntityWorld().isClient())
+        World world = entity.getEntityWorld();
+        if (world.isClient())
             return false;
-        return getOrCreateWorldStorage((ServerWorld) entity.getEntityWorld()).getOrCreateTickInternals().invoke0(entity);
-    }
-
-    private boolean invoke0(@NotNull Entity entity) {
-        if (invokedThisTick.containsKey(entity))
-            return invokedThisTick.getBoolean(entity);
-        boolean cancelled = invokeBeforeClass(entity, entity.getClass());
-        if (!cancelled) {
-            Events<Entity> typeEvents = TYPE_EVENTS.get(entity.getType());
-            if (typeEvents != null)
-                cancelled = invokeBefore(typeEvents, entity);
-        }
-        if (!cancelled) {
-            for (Reference2ReferenceMap.Entry<Predicate<Entity>, Events<Entity>> entry : PREDICATE_EVENTS.reference2ReferenceEntrySet()) {
-                if (entry.getKey().test(entity)) {
-                    cancelled = invokeBefore(entry.getValue(), entity);
-                    if (cancelled)
-                        break;
-                }
-            }
+        // also covers entities cancelled by batch listeners, see BatchTickInternals
+        EntityHooks hooks = (EntityHooks) entity;
+        long stamp = world.getTime();
+        if (hooks.entityevents$isTickStamped(world, stamp))
+            return hooks.entityevents$getTickResult();
+        // read the registry exactly once, so the whole dispatch sees the same listeners
+        Registry registry = TickInternals.registry;
+        EventRegistry.ClassPlan<Listeners, Invoker> plan = registry.classPlans.get(entity.getClass());
+        if (plan.idle && !EVENTS.anyRegions)
+            return false;
+        // interval listeners are due whenever this is a multiple of their interval
+        // mixing the ID spreads entities evenly, even if their IDs are all multiples of something
+        long slot = stamp + (HashCommon.mix(entity.getId()) & Integer.MAX_VALUE);
+        boolean idle = plan.idle || isAsleep(registry, plan, slot);
+        if (idle && !EVENTS.anyRegions)
+            return false;
+        TickInternals internals = getOrCreateWorldStorage((ServerWorld) world).getTickInternals();
+        // a region only affects entities in its own world
+        if (idle && internals.regionIndex.isEmpty())
+            return false;
+        return internals.invoke0(entity, hooks, stamp, slot, registry, plan);
+    }
+
+    // whether only interval listeners apply to the entity, and none of them are due at slot
+    private static boolean isAsleep(@NotNull Registry registry, @NotNull EventRegistry.ClassPlan<Listeners, Invoker> plan,
+                                    long slot) {
+        if (registry.anyUnbound)
+            return false;
+        for (Listeners classListeners : plan.classListeners) {
+            if (!classListeners.onlyIntervals || classListeners.anyDue(slot))
+                return false;
         }
-        invokeAfter(entity, cancelled);
-        invokedThisTick.put(entity, cancelled);
+        return true;
+    }
+
+    private boolean invoke0(@NotNull Entity entity, @NotNull EntityHooks hooks, long stamp, long slot,
+                            @NotNull Registry registry, @NotNull EventRegistry.ClassPlan<Listeners, Invoker> plan) {
+        // generated invokers don't know about this world's region listeners
+        boolean cancelled;
+        if (INVOKER_SHAPE != null && !registry.anyRequiresInterpreter && regionIndex.isEmpty())
+            cancelled = invokeGenerated(entity, slot, registry, plan);
+        else
+            cancelled = invokeInterpreted(entity, slot, registry, plan);
+        hooks.entityevents$setTickResult(entity.getEntityWorld(), stamp, cancelled);
         return cancelled;
     }
 
-    private boolean invokeBefore(@NotNull Events<Entity> events, @NotNull Entity entity) {
-        return events.beforeEvent.invoker().beforeTick(entity).orElse(false);
+    private boolean invokeGenerated(@NotNull Entity entity, long slot, @NotNull Registry registry,
+                                    @NotNull EventRegistry.ClassPlan<Listeners, Invoker> plan) {
+        Reference2ReferenceOpenHashMap<EntityType<?>, Listeners[]> typePlans = registry.getTypePlans();
+        EventRegistry.GeneratedInvoker<Listeners, Invoker> generated = plan.generated;
+        if (generated == null || generated.typePlans != typePlans) {
+            // several worlds can reach this at once - only let one of them generate a class
+            synchronized (plan) {
+                generated = plan.generated;
+                if (generated == null || generated.typePlans != typePlans) {
+                    assert INVOKER_SHAPE != null;
+                    Listeners[] typePlan = typePlans.get(entity.getType());
+                    Invoker invoker = null;
+                    // generated invokers call every listener they're given, so they can't skip buckets that aren't due
+                    if (!hasIntervals(plan, typePlan, registry.predicatePlan)) {
+                        invoker = InvokerGenerator.generate(INVOKER_SHAPE, entity.getClass(),
+                                createInvokerGroups(plan, typePlan, registry.predicatePlan));
+                    }
+                    plan.generated = generated = new EventRegistry.GeneratedInvoker<>(entity.getType(), typePlans, invoker);
+                }
+            }
+        }
+        // only generate one invoker per class - if the class is shared by several types, the others are interpreted
+        if (generated.invoker == null || generated.type != entity.getType())
+            return invokeInterpreted(entity, slot, registry, plan);
+        return generated.invoker.invoke(entity);
     }
 
-    private boolean invokeBeforeClass(@NotNull Entity entity, @NotNull Class<?> clazz) {
-        if (EventUtils.isSuperclassValid(clazz)) {
-            if (!invokeBeforeClass(entity, clazz.getSuperclass()))
-                return false;
+    private static boolean hasIntervals(@NotNull EventRegistry.ClassPlan<Listeners, Invoker> plan, @Nullable Listeners[] typePlan,
+                                        @NotNull EventRegistry.PredicatePlan<Listeners> predicatePlan) {
+        for (Listeners classListeners : plan.classListeners) {
+            if (classListeners.hasIntervals())
+                return true;
         }
-        Events<Entity> classEvents = CLASS_EVENTS.get(clazz);
-        if (classEvents == null)
-            return false;
-        return invokeBefore(classEvents, entity);
+        if (typePlan != null) {
+            for (Listeners typeListeners : typePlan) {
+                if (typeListeners.hasIntervals())
+                    return true;
+            }
+        }
+        for (Listeners listeners : predicatePlan.listeners) {
+            if (listeners.hasIntervals())
+                return true;
+        }
+        return false;
     }
 
-    private void invokeAfter(@NotNull Events<Entity> events, @NotNull Entity entity, boolean cancelled) {
-        if (cancelled)
-            events.cancelledEvent.invoker().tickCancelled(entity);
-        else
-            events.afterEvent.invoker().afterTick(entity);
+    private static @NotNull InvokerGenerator.Group[] createInvokerGroups(@NotNull EventRegistry.ClassPlan<Listeners, Invoker> plan,
+                                                                         @Nullable Listeners[] typePlan,
+                                                                         @NotNull EventRegistry.PredicatePlan<Listeners> predicatePlan) {
+        ObjectArrayList<InvokerGenerator.Group> groups = new ObjectArrayList<>();
+        for (Listeners classListeners : plan.classListeners)
+            groups.add(new InvokerGenerator.Group(null, classListeners.befores, classListeners.afters, classListeners.cancelleds));
+        if (typePlan != null) {
+            for (Listeners typeListeners : typePlan)
+                groups.add(new InvokerGenerator.Group(null, typeListeners.befores, typeListeners.afters, typeListeners.cancelleds));
+        }
+        for (int i = 0; i < predicatePlan.predicates.length; i++) {
+            Listeners listeners = predicatePlan.listeners[i];
+            groups.add(new InvokerGenerator.Group(predicatePlan.predicates[i], listeners.befores, listeners.afters, listeners.cancelleds));
+        }
+        return groups.toArray(new InvokerGenerator.Group[0]);
     }
 
-    private void invokeAfterClass(@NotNull Entity entity, @NotNull Class<?> clazz, boolean cancelled) {
-        if (EventUtils.isSuperclassValid(clazz))
-            invokeAfterClass(entity, clazz.getSuperclass(), cancelled);
-        Events<Entity> classEvents = CLASS_EVENTS.get(clazz);
-        if (classEvents == null)
-            return;
-        invokeAfter(classEvents, entity, cancelled);
+    private boolean invokeInterpreted(@NotNull Entity entity, long slot, @NotNull Registry registry,
+                                      @NotNull EventRegistry.ClassPlan<Listeners, Invoker> plan) {
+        boolean cancelled = false;
+        for (Listeners classListeners : plan.classListeners) {
+            if (invokeBefore(classListeners, entity, slot)) {
+                cancelled = true;
+                break;
+            }
+        }
+        Listeners[] typePlan = registry.getTypePlans().get(entity.getType());
+        if (!cancelled && typePlan != null) {
+            for (Listeners typeListeners : typePlan) {
+                if (invokeBefore(typeListeners, entity, slot)) {
+                    cancelled = true;
+                    break;
+                }
+            }
+        }
+        // only the regions covering the entity's chunk section can possibly contain it
+        // looked up once, so the after phase sees the same regions even if the entity moved
+        RegionIndex.Entry<Listeners>[] regions = regionIndex.get(Region.getSection(entity));
+        EventRegistry.PredicatePlan<Listeners> predicatePlan = registry.predicatePlan;
+        PredicateScratch predicateScratch = PredicateScratch.get();
+        // region results come first, then predicate results
+        int scratchBase = predicateScratch.push(regions.length + predicatePlan.predicates.length);
+        try {
+            if (!cancelled) {
+                for (int i = 0; i < regions.length; i++) {
+                    boolean matches = regions[i].region.contains(entity);
+                    predicateScratch.set(scratchBase + i, matches ? PredicateScratch.MATCHED : PredicateScratch.NOT_MATCHED);
+                    if (matches && invokeBefore(regions[i].listeners, entity, slot)) {
+                        cancelled = true;
+                        break;
+                    }
+                }
+            }
+            if (!cancelled) {
+                int predicateBase = scratchBase + regions.length;
+                for (int i = 0; i < predicatePlan.predicates.length; i++) {
+                    boolean matches = predicatePlan.predicates[i].test(entity);
+                    predicateScratch.set(predicateBase + i, matches ? PredicateScratch.MATCHED : PredicateScratch.NOT_MATCHED);
+                    if (matches && invokeBefore(predicatePlan.listeners[i], entity, slot)) {
+                        cancelled = true;
+                        break;
+                    }
+                }
+            }
+            invokeAfter(entity, slot, plan, typePlan, regions, predicatePlan, predicateScratch, scratchBase, cancelled);
+        } finally {
+            predicateScratch.pop(scratchBase);
+        }
+        return cancelled;
     }
 
-    private void invokeAfter(@NotNull Entity entity, boolean cancelled) {
-        invokeAfterClass(entity, entity.getClass(), cancelled);
-        Events<Entity> typeEvents = TYPE_EVENTS.get(entity.getType());
-        if (typeEvents != null)
-            invokeAfter(typeEvents, entity, cancelled);
-        for (Reference2ReferenceMap.Entry<Predicate<Entity>, Events<Entity>> entry : PREDICATE_EVENTS.reference2ReferenceEntrySet()) {
-            if (entry.getKey().test(entity))
-                invokeAfter(entry.getValue(), entity, cancelled);
+    private boolean invokeBefore(@NotNull Listeners listeners, @NotNull Entity entity, long slot) {
+        EntityTickEvents.Before<Entity>[] befores = listeners.befores;
+        int[] buckets = listeners.beforeBuckets;
+        long dueBuckets = buckets != null ? listeners.getDueBuckets(slot) : 0;
+        for (int i = 0; i < befores.length; i++) {
+            // interval listeners are skipped without being called on the ticks their bucket isn't due
+            if (buckets != null && !listeners.isDue(buckets[i], dueBuckets, slot))
+                continue;
+            TriState ret = befores[i].beforeTick(entity);
+            if (ret != TriState.DEFAULT)
+                return ret.orElse(false);
         }
+        return false;
     }
 
-    public static void endTick(@NotNull ServerWorld world) {
-        getWorldStorage(world).flatMap(WorldStorage::getTickInternals).ifPresent(TickInternals::endTick0);
+    private void invokeAfter(@NotNull Listeners listeners, @NotNull Entity entity, long slot, boolean cancelled) {
+        if (cancelled) {
+            for (EntityTickEvents.Cancelled<Entity> cancelledCallback : listeners.cancelleds)
+                cancelledCallback.tickCancelled(entity);
+        } else {
+            EntityTickEvents.After<Entity>[] afters = listeners.afters;
+            int[] buckets = listeners.afterBuckets;
+            long dueBuckets = buckets != null ? listeners.getDueBuckets(slot) : 0;
+            for (int i = 0; i < afters.length; i++) {
+                if (buckets == null || listeners.isDue(buckets[i], dueBuckets, slot))
+                    afters[i].afterTick(entity);
+            }
+        }
+        if (cancelled ? listeners.deferredCancelleds.length != 0 : listeners.deferredAfters.length != 0)
+            DEFERRED.get().add(entity, listeners, cancelled);
     }
 
-    private void endTick0() {
-        invokedThisTick.clear();
+    private void invokeAfter(@NotNull Entity entity, long slot, @NotNull EventRegistry.ClassPlan<Listeners, Invoker> plan,
+                             @Nullable Listeners[] typePlan, @NotNull RegionIndex.Entry<Listeners>[] regions,
+                             @NotNull EventRegistry.PredicatePlan<Listeners> predicatePlan,
+                             @NotNull PredicateScratch predicateScratch, int scratchBase, boolean cancelled) {
+        for (Listeners classListeners : plan.classListeners)
+            invokeAfter(classListeners, entity, slot, cancelled);
+        if (typePlan != null) {
+            for (Listeners typeListeners : typePlan)
+                invokeAfter(typeListeners, entity, slot, cancelled);
+        }
+        // only test regions and predicates that the before phase didn't get to
+        for (int i = 0; i < regions.length; i++) {
+            byte result = predicateScratch.get(scratchBase + i);
+            if (result == PredicateScratch.UNKNOWN ? regions[i].region.contains(entity) : result == PredicateScratch.MATCHED)
+                invokeAfter(regions[i].listeners, entity, slot, cancelled);
+        }
+        int predicateBase = scratchBase + regions.length;
+        for (int i = 0; i < predicatePlan.predicates.length; i++) {
+            byte result = predicateScratch.get(predicateBase + i);
+            if (result == PredicateScratch.UNKNOWN ? predicatePlan.predicates[i].test(entity) : result == PredicateScratch.MATCHED)
+                invokeAfter(predicatePlan.listeners[i], entity, slot, cancelled);
+        }
     }
 }
@@ -0,0 +1,48 @@
+package io.github.speedbridgemc.entityevents.impl.mixin;
+
+import io.github.speedbridgemc.entityevents.impl.EntityHooks;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.world.World;
+
+@Mixin(Entity.class)
+public abstract class EntityMixin implements EntityHooks {
+    // world and world time of the last tick event fired for this entity, and whether it was cancelled
+    // the world is only held until the entity ticks again, which it does in its new world right after changing dimension
+    private @Unique @Nullable World tickWorld;
+    private @Unique long tickStamp = Long.MIN_VALUE;
+    private @Unique boolean tickCancelled;
+    // how many damage methods are currently running for this entity (super.damage calls nest)
+    private @Unique int damageDepth;
+
+    @Override
+    public boolean entityevents$isTickStamped(@NotNull World world, long time) {
+        return tickStamp == time && tickWorld == world;
+    }
+
+    @Override
+    public boolean entityevents$getTickResult() {
+        return tickCancelled;
+    }
+
+    @Override
+    public void entityevents$setTickResult(@NotNull World world, long time, boolean cancelled) {
+        tickWorld = world;
+        tickStamp = time;
+        tickCancelled = cancelled;
+    }
+
+    @Override
+    public int entityevents$enterDamage() {
+        return damageDepth++;
+    }
+
+    @Override
+    public void entityevents$exitDamage() {
+        damageDepth--;
+    }
+}
@@ -2,9 +2,12 @@ package io.github.speedbridgemc.entityevents.impl.mixin;
 
 import io.github.speedbridgemc.entityevents.impl.ServerWorldHooks;
 import io.github.speedbridgemc.entityevents.impl.WorldStorage;
+import io.github.speedbridgemc.entityevents.impl.event.BatchTickInternals;
 import io.github.speedbridgemc.entityevents.impl.event.TickInternals;
 import org.jetbrains.annotations.NotNull;
+import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
@@ -12,10 +15,15 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import net.minecraft.entity.Entity;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.world.EntityList;
+import java.util.function.BooleanSupplier;
 
 @Mixin(ServerWorld.class)
 public abstract class ServerWorldMixin implements ServerWorldHooks {
-    private @Unique WorldStorage worldStorage;
+    @Shadow @Final EntityList entityList;
+
+    // volatile, since ServerWorldHooks.getOrCreateWorldStorage creates this lazily from whichever thread gets there first
+    private @Unique volatile WorldStorage worldStorage;
 
     @Override
     public WorldStorage entityevents$getWorldStorage() {
@@ -27,9 +35,23 @@ public abstract class ServerWorldMixin implements ServerWorldHooks {
         this.worldStorage = damageInternals;
     }
 
+    @Inject(method = "tick", at = @At(value = "INVOKE", target = "Lnet/minecraft/world/EntityList;forEach(Ljava/util/function/Consumer;)V"))
+    public void entityevents$runBeforeBatchTickEvents(BooleanSupplier shouldKeepTicking, CallbackInfo ci) {
+        if (BatchTickInternals.active)
+            BatchTickInternals.beforeEntitiesTick((ServerWorld) (Object) this, entityList);
+    }
+
+    @Inject(method = "tick", at = @At(value = "INVOKE", target = "Lnet/minecraft/world/EntityList;forEach(Ljava/util/function/Consumer;)V",
+            shift = At.Shift.AFTER))
+    public void entityevents$runAfterBatchTickEvents(BooleanSupplier shouldKeepTicking, CallbackInfo ci) {
+        // not guarded by active, since listeners may have been removed while entities ticked
+        BatchTickInternals.afterEntitiesTick((ServerWorld) (Object) this);
+    }
+
     @Inject(method = "tickEntity", at = @At("HEAD"), cancellable = true)
     public void entityevents$runTickEvents(Entity entity, CallbackInfo ci) {
-        if (TickInternals.invoke(entity)) {
+        // batch listeners cancel entities through the same per-entity result TickInternals uses
+        if ((TickInternals.active || BatchTickInternals.active) && TickInternals.invoke(entity)) {
             ci.cancel();
         }
     }
@@ -0,0 +1,58 @@
+package io.github.speedbridgemc.entityevents.impl;
+
+import org.jetbrains.annotations.NotNull;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.entity.Entity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.MathHelper;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// mocked worlds and entities, with just enough of the mixin hooks to dispatch events to them
+// they're stub-only, so the dispatch path doesn't record every call they get
+public final class TestWorlds {
+    private TestWorlds() { }
+
+    // mocking Entity and ServerWorld initializes them, which touches the registries
+    public static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    public static @NotNull ServerWorld world() {
+        ServerWorld world = mock(ServerWorld.class, withSettings().extraInterfaces(ServerWorldHooks.class).stubOnly());
+        // stands in for the volatile field ServerWorldMixin adds
+        AtomicReference<WorldStorage> storage = new AtomicReference<>();
+        when(((ServerWorldHooks) world).entityevents$getWorldStorage()).thenAnswer(invocation -> storage.get());
+        doAnswer(invocation -> {
+            storage.set(invocation.getArgument(0));
+            return null;
+        }).when((ServerWorldHooks) world).entityevents$setWorldStorage(any());
+        // same height as the overworld
+        when(world.getBottomSectionCoord()).thenReturn(-4);
+        when(world.getTopSectionCoord()).thenReturn(20);
+        return world;
+    }
+
+    public static @NotNull Entity entity(@NotNull ServerWorld world) {
+        Entity entity = mock(Entity.class, withSettings().extraInterfaces(EntityHooks.class).stubOnly());
+        when(entity.getEntityWorld()).thenReturn(world);
+        // entityevents$isTickStamped is left returning false, so every tick invoke actually dispatches
+        moveTo(entity, 0, 0, 0);
+        return entity;
+    }
+
+    // not thread-safe - only move entities while nothing is dispatching to them
+    public static void moveTo(@NotNull Entity entity, double x, double y, double z) {
+        when(entity.getX()).thenReturn(x);
+        when(entity.getY()).thenReturn(y);
+        when(entity.getZ()).thenReturn(z);
+        when(entity.getBlockX()).thenReturn(MathHelper.floor(x));
+        when(entity.getBlockY()).thenReturn(MathHelper.floor(y));
+        when(entity.getBlockZ()).thenReturn(MathHelper.floor(z));
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.speedbridgemc.entityevents.impl;
+
+import io.github.speedbridgemc.entityevents.api.EntityTickEvents;
+import io.github.speedbridgemc.entityevents.api.ListenerHandle;
+import io.github.speedbridgemc.entityevents.impl.event.TickInternals;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.Box;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// world storage is created lazily by whichever thread dispatches to a world first - which isn't necessarily that
+// world's thread, since entities can be damaged from anywhere
+class WorldStorageRaceTest {
+    private static final int THREADS = 8, WORLDS = 4, ROUNDS = 200;
+    private static final long RUN_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    @BeforeAll
+    static void bootstrap() {
+        TestWorlds.bootstrap();
+    }
+
+    @Test
+    void onlyOneStoragePerWorld() throws InterruptedException {
+        for (int round = 0; round < ROUNDS; round++) {
+            ServerWorld world = TestWorlds.world();
+            WorldStorage[] storages = new WorldStorage[THREADS];
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] threads = new Thread[THREADS];
+            for (int i = 0; i < THREADS; i++) {
+                final int index = i;
+                threads[i] = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    storages[index] = ServerWorldHooks.getOrCreateWorldStorage(world);
+                }, "Storage creator " + i);
+                threads[i].start();
+            }
+            start.countDown();
+            for (Thread thread : threads)
+                thread.join();
+            WorldStorage storage = ServerWorldHooks.getWorldStorage(world).orElse(null);
+            assertNotNull(storage, "No storage was created in round " + round);
+            for (int i = 0; i < THREADS; i++)
+                assertSame(storage, storages[i], "Thread " + i + " got a different storage in round " + round);
+        }
+    }
+
+    @Test
+    void dispatchAcrossWorlds() throws InterruptedException {
+        // every thread dispatches to entities of every world, so storages are created (and region indexes published)
+        // while other threads are already dispatching to the same worlds
+        ServerWorld[] worlds = new ServerWorld[WORLDS];
+        for (int i = 0; i < WORLDS; i++)
+            worlds[i] = TestWorlds.world();
+        AtomicLongArray expected = new AtomicLongArray(WORLDS), calls = new AtomicLongArray(WORLDS);
+        // set once the region listener of each world has been added
+        AtomicReferenceArray<ListenerHandle> regionHandles = new AtomicReferenceArray<>(WORLDS);
+        ThreadLocal<ServerWorld> regionCall = new ThreadLocal<>();
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+        long deadline = System.nanoTime() + RUN_NANOS;
+
+        ListenerHandle all = EntityTickEvents.all().listenAfter(entity -> {
+            for (int i = 0; i < WORLDS; i++) {
+                if (entity.getEntityWorld() == worlds[i])
+                    calls.incrementAndGet(i);
+            }
+        });
+        Thread[] threads = new Thread[THREADS + 1];
+        for (int i = 0; i < THREADS; i++) {
+            threads[i] = new Thread(() -> {
+                Entity[] entities = new Entity[WORLDS];
+                for (int j = 0; j < WORLDS; j++)
+                    entities[j] = TestWorlds.entity(worlds[j]);
+                while (System.nanoTime() < deadline && failures.isEmpty()) {
+                    for (int j = 0; j < WORLDS; j++) {
+                        boolean regionAdded = regionHandles.get(j) != null;
+                        regionCall.set(null);
+                        TickInternals.invoke(entities[j]);
+                        expected.incrementAndGet(j);
+                        ServerWorld regionWorld = regionCall.get();
+                        if (regionWorld != null && regionWorld != worlds[j])
+                            failures.add("Region of another world ran for an entity of world " + j);
+                        else if (regionAdded && regionWorld == null)
+                            failures.add("Region listener of world " + j + " didn't run");
+                    }
+                }
+            }, "Dispatcher " + i);
+        }
+        threads[THREADS] = new Thread(() -> {
+            for (int j = 0; j < WORLDS && System.nanoTime() < deadline; j++) {
+                // let dispatch create this world's storage first, sometimes
+                if (j % 2 == 0)
+                    Thread.yield();
+                ServerWorld world = worlds[j];
+                regionHandles.set(j, EntityTickEvents.inBox(world, new Box(-1, -1, -1, 1, 1, 1))
+                        .listenAfter(entity -> regionCall.set(world)));
+            }
+        }, "Region registrar");
+
+        try {
+            for (Thread thread : threads)
+                thread.start();
+            for (Thread thread : threads)
+                thread.join();
+        } finally {
+            all.close();
+            for (int j = 0; j < WORLDS; j++) {
+                ListenerHandle handle = regionHandles.get(j);
+                if (handle != null)
+                    handle.close();
+                TickInternals.onWorldUnloaded(worlds[j]);
+            }
+        }
+
+        assertTrue(failures.isEmpty(), () -> failures.size() + " failures, starting with: " + failures.peek());
+        for (int j = 0; j < WORLDS; j++) {
+            assertTrue(ServerWorldHooks.getWorldStorage(worlds[j]).isPresent(), "World " + j + " has no storage");
+            assertEquals(expected.get(j), calls.get(j), "Dispatches to world " + j);
+        }
+        assertFalse(TickInternals.active, "Listeners are still active after closing all of them");
+    }
+}
@@ -0,0 +1,155 @@
+package io.github.speedbridgemc.entityevents.impl.event;
+
+import io.github.speedbridgemc.entityevents.api.EntityTickEvents;
+import io.github.speedbridgemc.entityevents.api.ListenerHandle;
+import io.github.speedbridgemc.entityevents.impl.TestWorlds;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.fabricmc.fabric.api.util.TriState;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.server.world.ServerWorld;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// registers and closes listeners while other threads dispatch to the same events, and checks every dispatch saw
+// exactly the listeners it should have - registration and closing publish a new Registry, which a dispatch reads once
+class ListenerRaceTest {
+    private static final int DISPATCHERS = 4;
+    // each slot is registered, left alone for a few dispatches and closed again, over and over
+    private static final int SLOTS = 4;
+    private static final long RUN_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    // one registration of a slot
+    private static final class Probe {
+        public final int slot, generation;
+        // set right after the listen call returns, before close is called and after close returns
+        public volatile boolean added, closing, closed;
+        public ListenerHandle handle;
+
+        public Probe(int slot, int generation) {
+            this.slot = slot;
+            this.generation = generation;
+        }
+    }
+
+    // probes that ran during the current dispatch on this thread
+    private static final ThreadLocal<ObjectArrayList<Probe>> CALLS = ThreadLocal.withInitial(ObjectArrayList::new);
+
+    @BeforeAll
+    static void bootstrap() {
+        TestWorlds.bootstrap();
+    }
+
+    @Test
+    void registerAndCloseDuringDispatch() throws InterruptedException {
+        ServerWorld world = TestWorlds.world();
+        EntityTickEvents<Entity> events = EntityTickEvents.all();
+        AtomicReferenceArray<Probe> current = new AtomicReferenceArray<>(SLOTS);
+        AtomicLong dispatches = new AtomicLong(), cycles = new AtomicLong();
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+        long deadline = System.nanoTime() + RUN_NANOS;
+
+        // never closed, so it must run exactly once in every single dispatch
+        Probe permanent = new Probe(-1, 0);
+        permanent.handle = events.listenAfter(entity -> CALLS.get().add(permanent));
+        permanent.added = true;
+
+        Thread[] threads = new Thread[DISPATCHERS + SLOTS];
+        for (int i = 0; i < DISPATCHERS; i++) {
+            threads[i] = new Thread(() -> {
+                Entity entity = TestWorlds.entity(world);
+                Probe[] probes = new Probe[SLOTS];
+                boolean[] added = new boolean[SLOTS], closed = new boolean[SLOTS];
+                ObjectArrayList<Probe> calls = CALLS.get();
+                while (System.nanoTime() < deadline && failures.isEmpty()) {
+                    for (int slot = 0; slot < SLOTS; slot++) {
+                        Probe probe = probes[slot] = current.get(slot);
+                        added[slot] = probe != null && probe.added;
+                        closed[slot] = probe != null && probe.closed;
+                    }
+                    calls.clear();
+                    TickInternals.invoke(entity);
+                    dispatches.incrementAndGet();
+                    checkDispatch(probes, added, closed, permanent, calls, failures);
+                }
+            }, "Dispatcher " + i);
+        }
+        for (int i = 0; i < SLOTS; i++) {
+            final int slot = i;
+            threads[DISPATCHERS + i] = new Thread(() -> {
+                int generation = 0;
+                while (System.nanoTime() < deadline && failures.isEmpty()) {
+                    Probe probe = new Probe(slot, ++generation);
+                    current.set(slot, probe);
+                    // befores and afters are separate lists, and the priorities make adds land in the middle of them
+                    int priority = slot - SLOTS / 2;
+                    if (slot % 2 == 0) {
+                        probe.handle = events.listenBefore(entity -> {
+                            CALLS.get().add(probe);
+                            return TriState.DEFAULT;
+                        }, priority);
+                    } else
+                        probe.handle = events.listenAfter(entity -> CALLS.get().add(probe), priority);
+                    probe.added = true;
+                    // give every dispatcher a chance to see it
+                    long target = dispatches.get() + DISPATCHERS;
+                    while (dispatches.get() < target && System.nanoTime() < deadline)
+                        Thread.yield();
+                    probe.closing = true;
+                    probe.handle.close();
+                    probe.closed = true;
+                    cycles.incrementAndGet();
+                }
+            }, "Registrar " + i);
+        }
+
+        try {
+            for (Thread thread : threads)
+                thread.start();
+            for (Thread thread : threads)
+                thread.join();
+        } finally {
+            permanent.handle.close();
+        }
+
+        assertTrue(failures.isEmpty(), () -> failures.size() + " failures, starting with: " + failures.peek());
+        assertTrue(cycles.get() >= SLOTS, "Registrars only got through " + cycles.get() + " cycles");
+        assertFalse(TickInternals.active, "Listeners are still active after closing all of them");
+    }
+
+    private static void checkDispatch(@NotNull Probe[] probes, @NotNull boolean[] added, @NotNull boolean[] closed,
+                                      @NotNull Probe permanent, @NotNull ObjectArrayList<Probe> calls,
+                                      @NotNull ConcurrentLinkedQueue<String> failures) {
+        boolean sawPermanent = false;
+        for (int i = 0; i < calls.size(); i++) {
+            Probe probe = calls.get(i);
+            for (int j = 0; j < i; j++) {
+                if (calls.get(j) == probe)
+                    failures.add("Listener of slot " + probe.slot + " ran twice in one dispatch");
+            }
+            if (probe == permanent) {
+                sawPermanent = true;
+                continue;
+            }
+            // an older generation was closed before its replacement was even created
+            Probe seen = probes[probe.slot];
+            if (seen != null && (probe.generation < seen.generation || probe == seen && closed[probe.slot]))
+                failures.add("Listener of slot " + probe.slot + " ran after it was closed");
+        }
+        if (!sawPermanent)
+            failures.add("Permanent listener didn't run");
+        for (int slot = 0; slot < probes.length; slot++) {
+            Probe probe = probes[slot];
+            // added before the dispatch started, and closing didn't even start until it was over
+            if (added[slot] && !probe.closing && !calls.contains(probe))
+                failures.add("Listener of slot " + slot + " was lost");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.speedbridgemc.entityevents.impl.event;
+
+import io.github.speedbridgemc.entityevents.api.EntityDamageEvents;
+import io.github.speedbridgemc.entityevents.api.EntityTickEvents;
+import io.github.speedbridgemc.entityevents.api.ListenerHandle;
+import io.github.speedbridgemc.entityevents.impl.TestWorlds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.damage.DamageSource;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkPos;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// entities moving into and out of regions, checked on every tick and hit - the region index is by chunk section,
+// so these move within a section as well as across them
+class RegionMembershipTest {
+    private final ServerWorld world = TestWorlds.world(), otherWorld = TestWorlds.world();
+
+    @BeforeAll
+    static void bootstrap() {
+        TestWorlds.bootstrap();
+    }
+
+    @AfterEach
+    void unloadWorlds() {
+        TickInternals.onWorldUnloaded(world);
+        TickInternals.onWorldUnloaded(otherWorld);
+        DamageInternals.onWorldUnloaded(world);
+        DamageInternals.onWorldUnloaded(otherWorld);
+    }
+
+    @Test
+    void boxEnterAndExit() {
+        AtomicInteger ticks = new AtomicInteger(), hits = new AtomicInteger();
+        Box box = new Box(4, 64, 4, 20, 80, 20);
+        ListenerHandle tickHandle = EntityTickEvents.inBox(world, box).listenAfter(entity -> ticks.incrementAndGet());
+        ListenerHandle damageHandle = EntityDamageEvents.inBox(world, box).listenAfter((entity, source, amount) -> hits.incrementAndGet());
+        Entity entity = TestWorlds.entity(world);
+
+        // a different section entirely
+        TestWorlds.moveTo(entity, -100, 70, -100);
+        assertMembership(entity, ticks, hits, false, "far away");
+        // a section the box covers, but outside of the box itself
+        TestWorlds.moveTo(entity, 1, 70, 1);
+        assertMembership(entity, ticks, hits, false, "next to the box");
+        // entering
+        TestWorlds.moveTo(entity, 4, 64, 4);
+        assertMembership(entity, ticks, hits, true, "at the minimum corner");
+        // across a section boundary, still inside
+        TestWorlds.moveTo(entity, 19.5, 79.5, 19.5);
+        assertMembership(entity, ticks, hits, true, "near the maximum corner");
+        // boxes don't include their maximum
+        TestWorlds.moveTo(entity, 20, 79.5, 19.5);
+        assertMembership(entity, ticks, hits, false, "on the maximum X");
+        // back in, then out of the top
+        TestWorlds.moveTo(entity, 10, 70, 10);
+        assertMembership(entity, ticks, hits, true, "in the middle");
+        TestWorlds.moveTo(entity, 10, 81, 10);
+        assertMembership(entity, ticks, hits, false, "above the box");
+
+        // the same position in another world
+        Entity other = TestWorlds.entity(otherWorld);
+        TestWorlds.moveTo(other, 10, 70, 10);
+        assertMembership(other, ticks, hits, false, "in another world");
+
+        tickHandle.close();
+        damageHandle.close();
+        TestWorlds.moveTo(entity, 10, 70, 10);
+        assertMembership(entity, ticks, hits, false, "after closing");
+        assertFalse(TickInternals.active, "Tick listeners are still active after closing all of them");
+        assertFalse(DamageInternals.active, "Damage listeners are still active after closing all of them");
+    }
+
+    @Test
+    void chunkEnterAndExit() {
+        AtomicInteger ticks = new AtomicInteger(), hits = new AtomicInteger();
+        ChunkPos chunk = new ChunkPos(-1, 2);
+        EntityTickEvents.inChunks(world, Collections.singleton(chunk)).listenAfter(entity -> ticks.incrementAndGet());
+        EntityDamageEvents.inChunks(world, Collections.singleton(chunk)).listenAfter((entity, source, amount) -> hits.incrementAndGet());
+        Entity entity = TestWorlds.entity(world);
+
+        // chunk -1, 2 spans X -16 to -1 and Z 32 to 47, at every height
+        TestWorlds.moveTo(entity, -16, -64, 32);
+        assertMembership(entity, ticks, hits, true, "at the bottom corner");
+        TestWorlds.moveTo(entity, -0.5, 319, 47.5);
+        assertMembership(entity, ticks, hits, true, "at the top corner");
+        TestWorlds.moveTo(entity, 0, 100, 40);
+        assertMembership(entity, ticks, hits, false, "in the next chunk over");
+        TestWorlds.moveTo(entity, -8, 100, 31.5);
+        assertMembership(entity, ticks, hits, false, "in the previous chunk");
+        TestWorlds.moveTo(entity, -8, 100, 40);
+        assertMembership(entity, ticks, hits, true, "back inside");
+
+        // unloading drops the world's regions, and with them the last listeners
+        TickInternals.onWorldUnloaded(world);
+        DamageInternals.onWorldUnloaded(world);
+        assertMembership(entity, ticks, hits, false, "after unloading");
+        assertFalse(TickInternals.active, "Tick listeners are still active after unloading their world");
+        assertFalse(DamageInternals.active, "Damage listeners are still active after unloading their world");
+    }
+
+    private static void assertMembership(Entity entity, AtomicInteger ticks, AtomicInteger hits, boolean inside, String where) {
+        int ticksBefore = ticks.get(), hitsBefore = hits.get();
+        TickInternals.invoke(entity);
+        DamageInternals.invoke(entity, DamageSource.GENERIC, 1);
+        int expected = inside ? 1 : 0;
+        assertEquals(expected, ticks.get() - ticksBefore, "Tick listener calls " + where);
+        assertEquals(expected, hits.get() - hitsBefore, "Damage listener calls " + where);
+    }
+}
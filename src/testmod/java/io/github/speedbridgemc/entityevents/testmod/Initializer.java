@@ -13,13 +13,10 @@ public final class Initializer implements ModInitializer {
     public void onInitialize() {
         LOGGER.info("Hello from the testmod!");
         // attacks which don't kill Creepers ignite them
-        EntityDamageEvents.of(EntityType.CREEPER).registerAfter((entity, source, amount) -> {
-            if (!entity.world.isClient) {
-                // can't use Entity.isDead() since this happens _before_ damage is applied
-                // TODO maybe run after/cancelled events on end tick?
-                if (entity.getHealth() - amount > 0)
-                    entity.ignite();
-            }
+        // deferred to the end of the tick, so the damage has actually been applied by the time this runs
+        EntityDamageEvents.of(EntityType.CREEPER).listenAfterDeferred((entity, source, amount) -> {
+            if (!entity.world.isClient && !entity.isDead())
+                entity.ignite();
         });
     }
 }